@@ -0,0 +1,193 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * In process stand-in for the /api endpoints called by the sdk
+ *
+ * Every response has the shape sent by the server, built with the mappers of
+ * the data classes, so the sdk decodes it as usual. Saves are kept in memory,
+ * chunked saves are not offered so saves are uploaded whole.
+ */
+class MockServer {
+
+    static final String TOKEN = "benchmark-token";
+    static final String GAME_KEY = "benchmark-game";
+    static final String USERNAME = "benchmark";
+    static final int GAME_ID = 1;
+
+    private static final int MAX_BODY = 64 * 1024 * 1024;
+
+    private final Vertx vertx;
+    private final int achievements;
+    private final int records;
+    private final int friends;
+    private final Map<String, Buffer> saves = new ConcurrentHashMap<>();
+    private final Map<String, Instant> savedTimes = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    /**
+     * @param vertx The vertx to serve on
+     *
+     * @param achievements Number of achievements of the game
+     *
+     * @param records Number of records in the rank
+     *
+     * @param friends Number of friends of the user
+     */
+    MockServer(Vertx vertx, int achievements, int records, int friends) {
+        this.vertx = vertx;
+        this.achievements = achievements;
+        this.records = records;
+        this.friends = friends;
+    }
+
+    /**
+     * Listen on a free local port
+     *
+     * @return the future of the port
+     */
+    Future<Integer> start() {
+        Router router = Router.router(vertx);
+        router.route().handler(BodyHandler.create().setBodyLimit(MAX_BODY));
+        router.get("/api/token").handler(this::token);
+        router.get("/api/gameKey/:gameKey").handler(this::game);
+        router.get("/api/check/key/:gameKey").handler(it -> success(it, new JsonObject().put("bought", true)));
+        router.get("/api/achievement/:gameKey").handler(this::achievements);
+        router.get("/api/achievement/:gameKey/:name").handler(this::achievement);
+        router.post("/api/achievement/:gameKey").handler(it -> success(it, new JsonObject()));
+        router.get("/api/achieveProcess/:username/:gameKey/:name").handler(this::process);
+        router.post("/api/achieveProcess/:gameKey").handler(it -> success(it, new JsonObject()));
+        router.get("/api/record/max/:gameKey/:username").handler(this::maxRecord);
+        router.get("/api/record/:gameKey/:rankNum").handler(this::rank);
+        router.post("/api/record/:gameKey").handler(it -> success(it, new JsonObject()));
+        router.get("/api/save/:username/:gameKey").handler(this::saveNames);
+        router.get("/api/save/:username/:gameKey/:saveName").handler(this::download);
+        router.post("/api/save/:username/:gameKey/:saveName").handler(this::upload);
+        router.get("/api/friend").handler(this::friends);
+        router.get("/api/friend/invite/:friend/:gameKey").handler(it -> success(it, new JsonObject()));
+        router.get("/api/friend/:gameId").handler(this::friends);
+
+        Promise<Integer> promise = Promise.promise();
+        vertx.createHttpServer().requestHandler(router).listen(0, "localhost", listened -> {
+            if (listened.failed()) {
+                promise.fail(listened.cause());
+                return;
+            }
+            server = listened.result();
+            promise.complete(server.actualPort());
+        });
+        return promise.future();
+    }
+
+    Future<Void> close() {
+        Promise<Void> promise = Promise.promise();
+        if (server == null) {
+            promise.complete();
+        } else {
+            server.close(promise);
+        }
+        return promise.future();
+    }
+
+    private void token(RoutingContext context) {
+        User user = new User(USERNAME, USERNAME + "@example.com", null, null, 0);
+        UserRole role = new UserRole(user, Collections.emptyList());
+        respond(context, new JsonObject().put("token", true).put("userRole", UserKt.toJson(role)));
+    }
+
+    private void game(RoutingContext context) {
+        Game game = new Game(GAME_ID, "benchmark", 0, Instant.EPOCH, "benchmark", null, null);
+        success(context, new JsonObject().put("game", GameKt.toJson(game)));
+    }
+
+    private void achievements(RoutingContext context) {
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < achievements; i++) {
+            list.add(AchievementKt.toJson(achievement(i)));
+        }
+        success(context, new JsonObject().put("achievements", list));
+    }
+
+    private void achievement(RoutingContext context) {
+        success(context, new JsonObject().put("achievement", AchievementKt.toJson(achievement(0))));
+    }
+
+    private void process(RoutingContext context) {
+        UserAchievementProcess process = new UserAchievementProcess(USERNAME, 0, 50, false);
+        success(context, new JsonObject().put("userAchievementProcess", AchievementKt.toJson(process)));
+    }
+
+    private void maxRecord(RoutingContext context) {
+        Record record = new Record(0, GAME_ID, USERNAME, records);
+        success(context, new JsonObject().put("record", RecordKt.toJson(record)));
+    }
+
+    private void rank(RoutingContext context) {
+        int rankNum = Math.min(records, Integer.parseInt(context.pathParam("rankNum")));
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < rankNum; i++) {
+            list.add(RecordKt.toJson(new Record(i, GAME_ID, USERNAME + i, records - i)));
+        }
+        success(context, new JsonObject().put("records", list));
+    }
+
+    private void saveNames(RoutingContext context) {
+        JsonArray list = new JsonArray();
+        savedTimes.forEach((saveName, savedTime) ->
+                list.add(GameSaveKt.toJson(new GameSave(USERNAME, GAME_ID, saveName, savedTime))));
+        success(context, new JsonObject().put("gameSaves", list));
+    }
+
+    private void download(RoutingContext context) {
+        Buffer save = saves.get(context.pathParam("saveName"));
+        if (save == null) {
+            context.response().setStatusCode(404).end();
+            return;
+        }
+        context.response().putHeader("Content-Type", "application/octet-stream").end(save);
+    }
+
+    private void upload(RoutingContext context) {
+        String saveName = context.pathParam("saveName");
+        saves.put(saveName, context.getBody());
+        savedTimes.put(saveName, Instant.now());
+        success(context, new JsonObject());
+    }
+
+    private void friends(RoutingContext context) {
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < friends; i++) {
+            list.add(FriendKt.toJson(new Friend(USERNAME + i, i % 2 == 0, Instant.EPOCH)));
+        }
+        success(context, new JsonObject().put("friends", list));
+    }
+
+    private Achievement achievement(int i) {
+        return new Achievement(GAME_ID, i, "achievement" + i, "description of achievement " + i, 100);
+    }
+
+    private static void success(RoutingContext context, JsonObject body) {
+        respond(context, body.put("success", true));
+    }
+
+    private static void respond(RoutingContext context, JsonObject body) {
+        context.response().putHeader("Content-Type", "application/json").end(body.toBuffer());
+    }
+}
@@ -0,0 +1,35 @@
+package susteam.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+
+/**
+ * Cost of the reads called every frame or every screen
+ *
+ * With cached set to false the response cache is disabled, giving the baseline
+ * of a request and its decoding per call.
+ */
+public class ReadBenchmark extends SdkBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"10", "100"})
+    public int rankNum;
+
+    @Override
+    protected SdkOptions options(SdkOptions options) {
+        return cached ? options : options.setResponseCacheTtl("getAllAchievement", 0);
+    }
+
+    @Benchmark
+    public Record[] getRank() throws Exception {
+        return await(cached ? session.getRank(rankNum) : session.streamRank(rankNum).collect(Record[]::new));
+    }
+
+    @Benchmark
+    public Achievement[] getAllAchievement() throws Exception {
+        return await(session.getAllAchievement());
+    }
+}
@@ -0,0 +1,32 @@
+package susteam.sdk;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Cost of a burst of records added at once, as at the end of a round
+ *
+ * Scores are reported per burst, every record of a burst in flight together.
+ */
+public class RecordBenchmark extends SdkBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int burst;
+
+    private int score;
+
+    @Benchmark
+    public CompositeFuture addRecord() throws Exception {
+        List<Future<Void>> added = new ArrayList<>(burst);
+        for (int i = 0; i < burst; i++) {
+            added.add(session.addRecord(score++));
+        }
+        return await(CompositeFuture.all(new ArrayList<>(added)));
+    }
+}
@@ -0,0 +1,52 @@
+package susteam.sdk;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.File;
+import java.util.Random;
+
+
+/**
+ * Cost of uploading and downloading saves of different sizes
+ *
+ * The cached save is forgotten before every call, so load always downloads it
+ * instead of only checking its saved time.
+ */
+public class SaveBenchmark extends SdkBenchmark {
+
+    private static final String SAVE_NAME = "benchmark.save";
+
+    @Param({"1024", "65536", "1048576"})
+    public int saveSize;
+
+    private Buffer data;
+    private File cachedFile;
+
+    @Override
+    protected void prepare() throws Exception {
+        byte[] bytes = new byte[saveSize];
+        new Random(saveSize).nextBytes(bytes);
+        data = Buffer.buffer(bytes);
+        await(session.save(SAVE_NAME, data));
+        cachedFile = SaveCache.file(MockServer.GAME_ID, MockServer.USERNAME, SAVE_NAME);
+    }
+
+    @Setup(Level.Invocation)
+    public void forget() {
+        SaveCache.forget(cachedFile);
+    }
+
+    @Benchmark
+    public void save() throws Exception {
+        await(session.save(SAVE_NAME, data));
+    }
+
+    @Benchmark
+    public File load() throws Exception {
+        return await(session.load(SAVE_NAME));
+    }
+}
@@ -0,0 +1,95 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Base of the benchmarks, running a session against a {@link MockServer}
+ *
+ * The server runs on its own vertx and the client on another one, as in a game
+ * talking to a remote server, so only the sdk runs on the client event loop.
+ * Every benchmark reports throughput and sampled latency percentiles, and the
+ * build runs them with the gc profiler for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class SdkBenchmark {
+
+    static final int ACHIEVEMENTS = 50;
+    static final int RECORDS = 100;
+    static final int FRIENDS = 20;
+
+    private static final long TIMEOUT = 30;
+
+    protected SusteamClient client;
+    protected SusteamSession session;
+
+    private Vertx serverVertx;
+    private MockServer server;
+
+    @Setup
+    public void start() throws Exception {
+        serverVertx = Vertx.vertx();
+        server = new MockServer(serverVertx, ACHIEVEMENTS, RECORDS, FRIENDS);
+        int port = await(server.start());
+        client = new SusteamClient(options(new SdkOptions()
+                .setHost("localhost")
+                .setPort(port)
+                .setOfflineMode(false)
+                .setMaxRetries(0)));
+        session = client.session(MockServer.TOKEN, MockServer.GAME_KEY);
+        // resolve the user and the game once, as a running game would have
+        await(session.user());
+        await(session.getGame());
+        prepare();
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        await(client.close());
+        await(server.close());
+        serverVertx.close();
+    }
+
+    /**
+     * Adjust the options of the client of a benchmark
+     */
+    protected SdkOptions options(SdkOptions options) {
+        return options;
+    }
+
+    /**
+     * Prepare the data of a benchmark once the session is ready
+     */
+    protected void prepare() throws Exception {
+    }
+
+    /**
+     * Wait for a future of the sdk
+     *
+     * @return the result
+     */
+    static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        future.onComplete(it -> {
+            if (it.succeeded()) {
+                done.complete(it.result());
+            } else {
+                done.completeExceptionally(it.cause());
+            }
+        });
+        return done.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+}
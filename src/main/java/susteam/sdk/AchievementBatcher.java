@@ -0,0 +1,104 @@
+package susteam.sdk;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+
+/**
+ * Coalescing of achievement process updates
+ *
+ * Updates are collected per achievement name, keeping only the latest or the max
+ * rate of process, and sent together when the first pending update is older than
+ * the flush interval, when enough distinct achievements are pending, or on an
+ * explicit flush. Every update gets the future of the flush sending it.
+ */
+class AchievementBatcher {
+
+    static final long DEFAULT_INTERVAL = 5000;
+    static final int DEFAULT_SIZE = 32;
+
+    private final Vertx vertx;
+    private final BiFunction<String, Integer, Future<Void>> update;
+    private final long interval;
+    private final int size;
+    private final boolean keepMax;
+
+    private Map<String, Integer> pending = new LinkedHashMap<>();
+    private Promise<Void> flushed = Promise.promise();
+    private long timer = -1;
+
+    /**
+     * @param vertx The vertx to schedule flushes on
+     *
+     * @param update Sends the process of one achievement
+     *
+     * @param interval Milliseconds an update waits at most before being sent
+     *
+     * @param size Number of distinct pending achievements triggering a flush
+     *
+     * @param keepMax Whether to keep the max rate of process of an achievement instead of the latest
+     */
+    AchievementBatcher(Vertx vertx, BiFunction<String, Integer, Future<Void>> update,
+                       long interval, int size, boolean keepMax) {
+        this.vertx = vertx;
+        this.update = update;
+        this.interval = interval;
+        this.size = size;
+        this.keepMax = keepMax;
+    }
+
+    /**
+     * Queue the process of an achievement
+     *
+     * @return the future of the flush sending it
+     */
+    synchronized Future<Void> add(String achievementName, int rateOfProcess) {
+        Integer old = pending.get(achievementName);
+        pending.put(achievementName, old != null && keepMax ? Math.max(old, rateOfProcess) : rateOfProcess);
+        Future<Void> future = flushed.future();
+        if (pending.size() >= size) {
+            flush();
+        } else if (timer == -1) {
+            timer = vertx.setTimer(interval, it -> {
+                synchronized (this) {
+                    timer = -1;
+                    flush();
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Send all pending updates now
+     *
+     * @return the future of the flush, failed if any update failed
+     */
+    synchronized Future<Void> flush() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        if (pending.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        Map<String, Integer> batch = pending;
+        Promise<Void> done = flushed;
+        pending = new LinkedHashMap<>();
+        flushed = Promise.promise();
+
+        @SuppressWarnings("rawtypes")
+        List<Future> sent = new ArrayList<>(batch.size());
+        batch.forEach((name, rate) -> sent.add(update.apply(name, rate)));
+        CompositeFuture.join(sent).<Void>mapEmpty().onComplete(done);
+        return done.future();
+    }
+}
@@ -0,0 +1,228 @@
+package susteam.sdk;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BiFunction;
+
+
+/**
+ * Local progress of the achievements of a user, created by {@link SusteamSession#getAchievementEngine()}
+ *
+ * Achievements are indexed once, see {@link #indexOf(String)}, and their
+ * progress kept in an int array updated by compare and set, so events can be
+ * taken from any thread without locking. An achievement unlocks once its
+ * progress reaches its achieveCount: listeners are called at once, on the
+ * thread of the event, and later events of the achievement are dropped.
+ *
+ * Progress only goes up. It is sent to the server at most every flush interval,
+ * only for achievements whose progress grew since last sent, and at once on unlock.
+ */
+public class AchievementEngine {
+
+    private final Context context;
+    private final Achievement[] achievements;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] thresholds;
+    private final AtomicIntegerArray progress;
+    private final int[] sent;
+    private final BiFunction<String, Integer, Future<Void>> update;
+    private final long interval;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Set<Handler<Achievement>> listeners = new CopyOnWriteArraySet<>();
+
+    /**
+     * @param vertx The vertx to send the progress on
+     *
+     * @param achievements All achievements of the game
+     *
+     * @param processes Processes of the user, by achievement name
+     *
+     * @param update Sends the process of one achievement
+     *
+     * @param interval Milliseconds a progress waits at most before being sent
+     */
+    AchievementEngine(Vertx vertx, Achievement[] achievements, Map<String, UserAchievementProcess> processes,
+                      BiFunction<String, Integer, Future<Void>> update, long interval) {
+        this.context = vertx.getOrCreateContext();
+        this.achievements = achievements.clone();
+        this.thresholds = new int[achievements.length];
+        this.progress = new AtomicIntegerArray(achievements.length);
+        this.sent = new int[achievements.length];
+        this.update = update;
+        this.interval = interval;
+        for (int i = 0; i < achievements.length; i++) {
+            Achievement achievement = achievements[i];
+            indexes.put(achievement.getAchievementName(), i);
+            thresholds[i] = Math.max(1, achievement.getAchieveCount());
+            UserAchievementProcess process = processes.get(achievement.getAchievementName());
+            int initial = 0;
+            if (process != null) {
+                initial = process.getFinished() ? thresholds[i] : Math.min(thresholds[i], process.getRateOfProcess());
+            }
+            progress.set(i, initial);
+            sent[i] = initial;
+        }
+    }
+
+    /**
+     * Get the index of an achievement, to take its events without looking it up
+     *
+     * @return the index, -1 if the game has no such achievement
+     */
+    public int indexOf(String achievementName) {
+        Integer index = indexes.get(achievementName);
+        return index == null ? -1 : index;
+    }
+
+    public int size() {
+        return achievements.length;
+    }
+
+    public Achievement getAchievement(int index) {
+        return achievements[index];
+    }
+
+    public int getProgress(int index) {
+        return progress.get(index);
+    }
+
+    public boolean isUnlocked(int index) {
+        return progress.get(index) >= thresholds[index];
+    }
+
+    /**
+     * Add to the progress of an achievement
+     *
+     * @param achievementName Name of the achievement
+     *
+     * @param delta Progress made, ignored if not positive
+     *
+     * @return the progress, -1 if the game has no such achievement
+     */
+    public int increment(String achievementName, int delta) {
+        int index = indexOf(achievementName);
+        return index == -1 ? -1 : increment(index, delta);
+    }
+
+    /**
+     * Add to the progress of an achievement
+     *
+     * @param index Index of the achievement, see {@link #indexOf(String)}
+     *
+     * @param delta Progress made, ignored if not positive
+     *
+     * @return the progress
+     */
+    public int increment(int index, int delta) {
+        int threshold = thresholds[index];
+        while (true) {
+            int old = progress.get(index);
+            if (delta <= 0 || old >= threshold) {
+                return old;
+            }
+            int updated = (int) Math.min(threshold, (long) old + delta);
+            if (progress.compareAndSet(index, old, updated)) {
+                advanced(index, updated);
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Raise the progress of an achievement, a lower progress is ignored
+     *
+     * @param index Index of the achievement, see {@link #indexOf(String)}
+     *
+     * @param value Progress reached
+     *
+     * @return the progress
+     */
+    public int setProgress(int index, int value) {
+        int threshold = thresholds[index];
+        while (true) {
+            int old = progress.get(index);
+            if (value <= old || old >= threshold) {
+                return old;
+            }
+            int updated = Math.min(threshold, value);
+            if (progress.compareAndSet(index, old, updated)) {
+                advanced(index, updated);
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Call listener with every achievement unlocked from now
+     */
+    public void addUnlockListener(Handler<Achievement> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeUnlockListener(Handler<Achievement> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Send the progress not sent yet
+     *
+     * @return the future, completed once sent
+     */
+    public Future<Void> flush() {
+        Promise<Void> promise = Promise.promise();
+        context.runOnContext(v -> send().onComplete(promise));
+        return promise.future();
+    }
+
+    private void advanced(int index, int updated) {
+        if (updated >= thresholds[index]) {
+            for (Handler<Achievement> listener : listeners) {
+                listener.handle(achievements[index]);
+            }
+            context.runOnContext(v -> send());
+        } else if (scheduled.compareAndSet(false, true)) {
+            context.runOnContext(v -> context.owner().setTimer(interval, it -> send()));
+        }
+    }
+
+    /**
+     * Send every progress grown since last sent, on the context so sent is only touched by it
+     */
+    private Future<Void> send() {
+        scheduled.set(false);
+        @SuppressWarnings("rawtypes")
+        List<Future> sending = new ArrayList<>();
+        for (int i = 0; i < achievements.length; i++) {
+            int value = progress.get(i);
+            int last = sent[i];
+            if (value <= last) {
+                continue;
+            }
+            sent[i] = value;
+            int index = i;
+            sending.add(update.apply(achievements[i].getAchievementName(), value).onFailure(it -> context.runOnContext(v -> {
+                // send it again with the next progress, or after the interval
+                if (sent[index] == value) {
+                    sent[index] = last;
+                    if (scheduled.compareAndSet(false, true)) {
+                        context.owner().setTimer(interval, timer -> send());
+                    }
+                }
+            })));
+        }
+        return CompositeFuture.join(sending).mapEmpty();
+    }
+}
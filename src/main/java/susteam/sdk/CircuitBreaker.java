@@ -0,0 +1,169 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.NoStackTraceThrowable;
+
+import java.net.ConnectException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Retries of calls failing on the way to the server, and failing fast while it is down
+ *
+ * A call failing without an answer of the server, such as a connection error or
+ * a timeout, is retried after an exponential backoff with full jitter. Calls that
+ * are not idempotent are only retried if the connection could not be opened, so
+ * the request was never sent. Errors answered by the server are never retried.
+ *
+ * After enough consecutive failures, or as soon as the server is reported offline,
+ * the circuit opens and calls fail at once. Once the reset timeout has passed the
+ * next call first probes the server, closing the circuit if it is online.
+ */
+class CircuitBreaker {
+
+    static final String SERVER_OFFLINE = "server offline";
+
+    private final Vertx vertx;
+    private final Supplier<Future<Void>> probe;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final long maxRetryDelay;
+    private final int threshold;
+    private final long resetTimeout;
+
+    private int failures;
+    private long openedAt;
+    private boolean open;
+    private Future<Void> probing;
+
+    /**
+     * @param vertx The vertx to schedule retries on
+     *
+     * @param probe Checks whether the server is online
+     *
+     * @param options Options giving the retries and thresholds
+     */
+    CircuitBreaker(Vertx vertx, Supplier<Future<Void>> probe, SdkOptions options) {
+        this.vertx = vertx;
+        this.probe = probe;
+        this.maxRetries = options.getMaxRetries();
+        this.retryDelay = options.getRetryDelay();
+        this.maxRetryDelay = options.getMaxRetryDelay();
+        this.threshold = options.getCircuitBreakerThreshold();
+        this.resetTimeout = TimeUnit.MILLISECONDS.toNanos(options.getCircuitBreakerResetTimeout());
+    }
+
+    /**
+     * Make a call, retrying it on failures on the way to the server
+     *
+     * @param idempotent Whether the call can be sent again once it reached the server
+     *
+     * @param call Makes the call
+     *
+     * @return the future of the last attempt
+     */
+    <T> Future<T> call(boolean idempotent, Supplier<Future<T>> call) {
+        Promise<T> promise = Promise.promise();
+        attempt(idempotent, call, 0, promise);
+        return promise.future();
+    }
+
+    /**
+     * Report whether the server is online, as checked by the caller
+     */
+    synchronized void report(Throwable failure) {
+        if (failure == null || !unanswered(failure)) {
+            close();
+        } else {
+            trip();
+        }
+    }
+
+    private <T> void attempt(boolean idempotent, Supplier<Future<T>> call, int retries, Promise<T> promise) {
+        admit().onComplete(admitted -> {
+            if (admitted.failed()) {
+                promise.fail(admitted.cause());
+                return;
+            }
+            call.get().onComplete(res -> {
+                if (res.succeeded() || !unanswered(res.cause())) {
+                    succeeded();
+                    promise.handle(res);
+                    return;
+                }
+                if (res.cause() instanceof ServerOfflineException) {
+                    // a call made through another breaker found the server down, it was not sent
+                    promise.fail(res.cause());
+                    return;
+                }
+                failed();
+                boolean sent = !(res.cause() instanceof ConnectException);
+                if (retries >= maxRetries || (sent && !idempotent)) {
+                    promise.fail(res.cause());
+                    return;
+                }
+                long backoff = Math.min(maxRetryDelay, retryDelay << Math.min(retries, 30));
+                long delay = Math.max(1, ThreadLocalRandom.current().nextLong(backoff + 1));
+                vertx.setTimer(delay, it -> attempt(idempotent, call, retries + 1, promise));
+            });
+        });
+    }
+
+    /**
+     * Let a call through if the circuit is closed, or once a probe found the server online
+     */
+    private synchronized Future<Void> admit() {
+        if (!open) {
+            return Future.succeededFuture();
+        }
+        if (System.nanoTime() - openedAt < resetTimeout) {
+            return Future.failedFuture(new ServerOfflineException());
+        }
+        Future<Void> future = probing;
+        if (future == null) {
+            Future<Void> probed = probe.get();
+            probing = probed;
+            probed.onComplete(it -> {
+                synchronized (this) {
+                    probing = null;
+                    report(it.failed() ? it.cause() : null);
+                }
+            });
+            future = probed;
+        }
+        return future.recover(it -> Future.failedFuture(new ServerOfflineException()));
+    }
+
+    private synchronized void succeeded() {
+        failures = 0;
+    }
+
+    private synchronized void failed() {
+        if (++failures >= threshold) {
+            trip();
+        }
+    }
+
+    private void trip() {
+        open = true;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        open = false;
+        failures = 0;
+    }
+
+    /**
+     * Get whether a failure happened on the way to the server, rather than being answered by it
+     *
+     * Calls failed at once by an open circuit never reached the server.
+     */
+    static boolean unanswered(Throwable failure) {
+        return !(failure instanceof NoStackTraceThrowable);
+    }
+}
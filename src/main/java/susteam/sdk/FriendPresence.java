@@ -0,0 +1,255 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketConnectOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Supplier;
+
+
+/**
+ * Live presence of the friends of a user
+ *
+ * While there are listeners, a WebSocket to /api/friend/presence stays open and
+ * the server pushes a json event whenever a friend changes:
+ * {"type": "presence", "username", "online", "lastSeen"}, or a full
+ * {"type": "snapshot", "friends": [...]}. The presence map is seeded with the
+ * friend list once connected and kept up to date from the events, and listeners
+ * get every friend whose presence changed. A closed connection is opened again
+ * after an exponential backoff, and the map seeded again. An event that cannot be
+ * decoded is skipped and reported to the exception handler.
+ */
+class FriendPresence {
+
+    static final long RECONNECT_DELAY = 1000;
+    static final long MAX_RECONNECT_DELAY = 30000;
+
+    private static final String URI = "/api/friend/presence";
+
+    private final Vertx vertx;
+    private final HttpClient client;
+    private final SdkOptions options;
+    private final String token;
+    private final Supplier<Future<Friend[]>> fetch;
+    private final Map<String, Friend> friends = new ConcurrentHashMap<>();
+    private final Set<Handler<Friend>> listeners = new CopyOnWriteArraySet<>();
+    private volatile Handler<Throwable> exceptionHandler;
+
+    private final Set<String> changed = new HashSet<>();
+    private WebSocket socket;
+    private Future<Void> ready;
+    private long retryTimer = -1;
+    private int retries;
+
+    /**
+     * @param vertx The vertx to schedule reconnections on
+     *
+     * @param client The client to open the WebSocket with
+     *
+     * @param options Options giving the server to connect to
+     *
+     * @param token User token
+     *
+     * @param fetch Fetches the full friend list
+     */
+    FriendPresence(Vertx vertx, HttpClient client, SdkOptions options, String token, Supplier<Future<Friend[]>> fetch) {
+        this.vertx = vertx;
+        this.client = client;
+        this.options = options;
+        this.token = token;
+        this.fetch = fetch;
+    }
+
+    /**
+     * Call listener with every friend whose presence changes
+     *
+     * @return the future, succeeded once the presence map is seeded
+     */
+    synchronized Future<Void> subscribe(Handler<Friend> listener) {
+        listeners.add(listener);
+        if (ready == null) {
+            Promise<Void> promise = Promise.promise();
+            ready = promise.future();
+            connect(promise);
+        }
+        return ready;
+    }
+
+    /**
+     * Set the handler of the events that cannot be decoded, or null to skip them silently
+     */
+    void exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+    }
+
+    synchronized void unsubscribe(Handler<Friend> listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            close();
+        }
+    }
+
+    /**
+     * Get the current presence of every friend, by username
+     */
+    Map<String, Friend> friends() {
+        return new HashMap<>(friends);
+    }
+
+    /**
+     * Drop every listener and close the connection
+     */
+    synchronized void close() {
+        listeners.clear();
+        ready = null;
+        if (retryTimer != -1) {
+            vertx.cancelTimer(retryTimer);
+            retryTimer = -1;
+        }
+        if (socket != null) {
+            WebSocket closing = socket;
+            socket = null;
+            closing.close();
+        }
+    }
+
+    private void connect(Promise<Void> promise) {
+        WebSocketConnectOptions connect = new WebSocketConnectOptions()
+                .setHost(options.getHost())
+                .setPort(options.getPort())
+                .setSsl(options.isSsl())
+                .setURI(URI);
+        connect.addHeader("Authorization", "Bearer " + token);
+        client.webSocket(connect, opened -> {
+            if (opened.failed()) {
+                promise.tryFail(opened.cause());
+                reconnect();
+                return;
+            }
+            WebSocket ws = opened.result();
+            synchronized (this) {
+                if (listeners.isEmpty()) {
+                    ws.close();
+                    return;
+                }
+                socket = ws;
+                retries = 0;
+                changed.clear();
+            }
+            ws.textMessageHandler(this::event);
+            ws.closeHandler(it -> {
+                synchronized (this) {
+                    if (socket != ws) {
+                        return;
+                    }
+                    socket = null;
+                }
+                reconnect();
+            });
+            // seed after connecting, so no change is missed between the list and the events
+            fetch.get().onComplete(fetched -> {
+                if (fetched.succeeded()) {
+                    seed(fetched.result(), true);
+                }
+                promise.handle(fetched.mapEmpty());
+            });
+        });
+    }
+
+    private synchronized void reconnect() {
+        if (listeners.isEmpty() || retryTimer != -1) {
+            return;
+        }
+        long delay = Math.min(MAX_RECONNECT_DELAY, RECONNECT_DELAY << Math.min(retries++, 30));
+        retryTimer = vertx.setTimer(delay, it -> {
+            Promise<Void> promise = Promise.promise();
+            synchronized (this) {
+                retryTimer = -1;
+                if (listeners.isEmpty()) {
+                    return;
+                }
+                ready = promise.future();
+            }
+            connect(promise);
+        });
+    }
+
+    private void event(String text) {
+        Friend friend = null;
+        Friend[] snapshot = null;
+        try {
+            JsonObject event = new JsonObject(text);
+            if ("presence".equals(event.getString("type"))) {
+                friend = FriendKt.toFriend(event);
+            } else if ("snapshot".equals(event.getString("type"))) {
+                JsonArray list = event.getJsonArray("friends");
+                snapshot = new Friend[list.size()];
+                for (int i = 0; i < snapshot.length; i++) {
+                    snapshot[i] = FriendKt.toFriend(list.getJsonObject(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            Handler<Throwable> handler = exceptionHandler;
+            if (handler != null) {
+                handler.handle(e);
+            }
+            return;
+        }
+        if (friend != null) {
+            synchronized (this) {
+                changed.add(friend.getUsername());
+            }
+            update(friend);
+        } else if (snapshot != null) {
+            seed(snapshot, false);
+        }
+    }
+
+    /**
+     * Replace the presence map by a full list
+     *
+     * @param fetched Whether the list was fetched, so older than the events received since connecting
+     */
+    private void seed(Friend[] list, boolean fetched) {
+        Set<String> listed = new HashSet<>();
+        for (Friend friend : list) {
+            listed.add(friend.getUsername());
+        }
+        if (fetched) {
+            synchronized (this) {
+                listed.addAll(changed);
+            }
+        }
+        // drop the unlisted friends first, so listeners never see them next to the new list
+        friends.keySet().retainAll(listed);
+        for (Friend friend : list) {
+            synchronized (this) {
+                if (fetched && changed.contains(friend.getUsername())) {
+                    continue;
+                }
+            }
+            update(friend);
+        }
+    }
+
+    private void update(Friend friend) {
+        Friend old = friends.put(friend.getUsername(), friend);
+        if (!friend.equals(old)) {
+            for (Handler<Friend> listener : listeners) {
+                listener.handle(friend);
+            }
+        }
+    }
+}
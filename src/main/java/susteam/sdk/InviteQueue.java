@@ -0,0 +1,144 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * Delivery of invites with bounded concurrency and a rate limit
+ *
+ * Invites wait in order until one of a few slots is free and a token of the
+ * bucket is available. The bucket holds up to burst tokens and gets rate tokens
+ * per second, so a party can be invited at once while a long list is spread out
+ * instead of hitting the server in one go.
+ */
+class InviteQueue {
+
+    static final int DEFAULT_CONCURRENCY = 4;
+    static final double DEFAULT_RATE = 5;
+    static final int DEFAULT_BURST = 5;
+
+    static final String SESSION_CLOSED = "session closed";
+
+    private final Vertx vertx;
+    private final Function<String, Future<Void>> send;
+    private final int concurrency;
+    private final double tokensPerNano;
+    private final double burst;
+    private final Deque<Invite> queue = new ArrayDeque<>();
+
+    private int running;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private long timer = -1;
+
+    /**
+     * @param vertx The vertx to wait for tokens on
+     *
+     * @param send Sends the invite of one friend
+     *
+     * @param concurrency Max number of invites in flight
+     *
+     * @param rate Invites sent per second once the burst is used
+     *
+     * @param burst Invites sent at once after being idle
+     */
+    InviteQueue(Vertx vertx, Function<String, Future<Void>> send, int concurrency, double rate, int burst) {
+        this.vertx = vertx;
+        this.send = send;
+        this.concurrency = Math.max(1, concurrency);
+        this.tokensPerNano = rate / 1e9;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * Queue the invite of a friend
+     *
+     * @return the future of the invite
+     */
+    Future<Void> offer(String friendName) {
+        Promise<Void> promise = Promise.promise();
+        synchronized (this) {
+            queue.add(new Invite(friendName, promise));
+        }
+        drain();
+        return promise.future();
+    }
+
+    /**
+     * Fail the invites not sent yet, invites in flight complete
+     */
+    void close() {
+        List<Invite> dropped;
+        synchronized (this) {
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+                timer = -1;
+            }
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (Invite invite : dropped) {
+            invite.promise.fail(SESSION_CLOSED);
+        }
+    }
+
+    /**
+     * Send the invites allowed by the free slots and tokens, outside of the lock
+     * so an invite failing at once does not recurse into it
+     */
+    private void drain() {
+        List<Invite> sending = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            while (running < concurrency && !queue.isEmpty() && tokens >= 1) {
+                tokens--;
+                running++;
+                sending.add(queue.poll());
+            }
+            if (running < concurrency && !queue.isEmpty() && timer == -1) {
+                long delay = Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / 1e6));
+                timer = vertx.setTimer(delay, it -> {
+                    synchronized (this) {
+                        timer = -1;
+                    }
+                    drain();
+                });
+            }
+        }
+        for (Invite invite : sending) {
+            send.apply(invite.friendName).onComplete(res -> {
+                synchronized (this) {
+                    running--;
+                }
+                invite.promise.handle(res);
+                drain();
+            });
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+    private static class Invite {
+
+        private final String friendName;
+        private final Promise<Void> promise;
+
+        Invite(String friendName, Promise<Void> promise) {
+            this.friendName = friendName;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package susteam.sdk;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.impl.NoStackTraceThrowable;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+
+/**
+ * Stream of the elements of an array field in a response, decoded while the response arrives
+ *
+ * The response is fed to a non-blocking Jackson parser chunk by chunk, and every
+ * element of the array is read token by token into its data class, so neither the
+ * body nor a json tree of it is ever held in memory. The response is paused while
+ * decoded elements are not consumed.
+ *
+ * The stream fails if the response has no "success": true, with its "error" as message,
+ * as an answer of the server. It fails with a {@link VertxException} on a 5xx status,
+ * and with a {@link DecodeFailure} if the body is not json, as failures not answered.
+ *
+ * @param <T> Type of the elements
+ */
+public class JsonArrayStream<T> implements ReadStream<T> {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int MAX_QUEUED = 256;
+
+    /**
+     * Reads the fields of one element into a value
+     */
+    interface Reader<T> {
+
+        /**
+         * Read the value of a scalar field of the current element
+         */
+        void field(String name, JsonParser parser) throws IOException;
+
+        /**
+         * Build the current element and reset for the next one
+         */
+        T build();
+    }
+
+    private final String field;
+    private final Reader<T> reader;
+    private final Handler<String> errorHandler;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Sink sink = new Sink();
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+
+    private Handler<T> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private long demand = Long.MAX_VALUE;
+
+    private int depth;
+    private boolean inArray;
+    private String name;
+    private Boolean success;
+    private String error;
+    private boolean parsed;
+    private int statusCode;
+    private boolean ended;
+    private Throwable failure;
+
+    /**
+     * @param field Name of the array field in the response
+     *
+     * @param reader Reader of the elements
+     *
+     * @param errorHandler Handler of the error of a failed response
+     */
+    JsonArrayStream(String field, Reader<T> reader, Handler<String> errorHandler) {
+        this.field = field;
+        this.reader = reader;
+        this.errorHandler = errorHandler;
+        try {
+            this.parser = FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Get the write stream the response body should be piped to
+     */
+    WriteStream<Buffer> sink() {
+        return sink;
+    }
+
+    /**
+     * Fail the stream, used when the request itself fails
+     */
+    void fail(Throwable cause) {
+        if (failure != null || ended) {
+            return;
+        }
+        failure = cause;
+        queue.clear();
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(cause);
+        }
+    }
+
+    /**
+     * Collect all elements into an array
+     *
+     * @param create Creates an array of the given length
+     *
+     * @return the future of the array
+     */
+    public Future<T[]> collect(IntFunction<T[]> create) {
+        Promise<T[]> promise = Promise.promise();
+        List<T> elements = new ArrayList<>();
+        exceptionHandler(promise::tryFail);
+        endHandler(it -> promise.tryComplete(elements.toArray(create.apply(elements.size()))));
+        handler(elements::add);
+        return promise.future();
+    }
+
+    @Override
+    public JsonArrayStream<T> exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        if (failure != null && handler != null) {
+            handler.handle(failure);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonArrayStream<T> handler(Handler<T> handler) {
+        this.handler = handler;
+        emit();
+        return this;
+    }
+
+    @Override
+    public JsonArrayStream<T> pause() {
+        demand = 0;
+        return this;
+    }
+
+    @Override
+    public JsonArrayStream<T> resume() {
+        return fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public JsonArrayStream<T> fetch(long amount) {
+        demand += amount;
+        if (demand < 0) {
+            demand = Long.MAX_VALUE;
+        }
+        emit();
+        return this;
+    }
+
+    @Override
+    public JsonArrayStream<T> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        emit();
+        return this;
+    }
+
+    private void emit() {
+        while (failure == null && handler != null && demand > 0 && !queue.isEmpty()) {
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            handler.handle(queue.poll());
+        }
+        if (failure == null && ended && queue.isEmpty() && endHandler != null) {
+            Handler<Void> end = endHandler;
+            endHandler = null;
+            end.handle(null);
+        }
+        if (sink.drainHandler != null && queue.size() < MAX_QUEUED / 2) {
+            sink.drainHandler.handle(null);
+        }
+    }
+
+    private void feed(Buffer data) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            byte[] bytes = data.getBytes();
+            feeder.feedInput(bytes, 0, bytes.length);
+            parse();
+        } catch (IOException | RuntimeException e) {
+            fail(new DecodeFailure(e));
+        }
+        emit();
+    }
+
+    private void finish() {
+        if (failure != null) {
+            return;
+        }
+        try {
+            feeder.endOfInput();
+            parse();
+        } catch (IOException | RuntimeException e) {
+            fail(new DecodeFailure(e));
+            return;
+        }
+        parsed = true;
+        if (statusCode != 0) {
+            complete();
+        }
+    }
+
+    /**
+     * End the stream according to the status of the response, once its body is parsed
+     *
+     * @param statusCode Status of the response
+     */
+    void end(int statusCode) {
+        this.statusCode = statusCode;
+        if (statusCode >= 500) {
+            fail(new VertxException("server error " + statusCode));
+        } else if (parsed) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (failure != null || ended) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(success)) {
+            if (error != null) {
+                errorHandler.handle(error);
+            }
+            fail(new NoStackTraceThrowable(error == null ? "json format invalid" : error));
+            return;
+        }
+        ended = true;
+        emit();
+    }
+
+    private void parse() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    if (depth == 2 && token == JsonToken.START_ARRAY && field.equals(name)) {
+                        inArray = true;
+                    }
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    if (inArray && depth == 2 && token == JsonToken.END_OBJECT) {
+                        queue.add(reader.build());
+                    } else if (inArray && depth == 1) {
+                        inArray = false;
+                    }
+                    break;
+                case FIELD_NAME:
+                    name = parser.getCurrentName();
+                    break;
+                default:
+                    if (depth == 1 && "success".equals(name)) {
+                        success = parser.getValueAsBoolean();
+                    } else if (depth == 1 && "error".equals(name)) {
+                        error = parser.getValueAsString();
+                    } else if (inArray && depth == 3) {
+                        reader.field(name, parser);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Failure of decoding a response, not an answer of the server
+     */
+    static class DecodeFailure extends Exception {
+
+        DecodeFailure(Throwable cause) {
+            super("json format invalid", cause, false, false);
+        }
+    }
+
+    private class Sink implements WriteStream<Buffer> {
+
+        private Handler<Void> drainHandler;
+
+        @Override
+        public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public WriteStream<Buffer> write(Buffer data) {
+            feed(data);
+            return this;
+        }
+
+        @Override
+        public WriteStream<Buffer> write(Buffer data, Handler<AsyncResult<Void>> handler) {
+            feed(data);
+            if (handler != null) {
+                handler.handle(Future.succeededFuture());
+            }
+            return this;
+        }
+
+        @Override
+        public void end() {
+            finish();
+        }
+
+        @Override
+        public void end(Handler<AsyncResult<Void>> handler) {
+            finish();
+            if (handler != null) {
+                handler.handle(Future.succeededFuture());
+            }
+        }
+
+        @Override
+        public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return queue.size() >= MAX_QUEUED;
+        }
+
+        @Override
+        public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+            this.drainHandler = handler;
+            return this;
+        }
+    }
+}
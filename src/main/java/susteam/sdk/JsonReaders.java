@@ -0,0 +1,185 @@
+package susteam.sdk;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.time.Instant;
+
+
+/**
+ * Readers decoding the elements of array responses straight into the data classes
+ */
+final class JsonReaders {
+
+    private JsonReaders() {
+    }
+
+    static JsonArrayStream.Reader<Record> record() {
+        return new JsonArrayStream.Reader<Record>() {
+            private int recordId;
+            private int gameId;
+            private String username;
+            private int score;
+
+            @Override
+            public void field(String name, JsonParser parser) throws IOException {
+                switch (name) {
+                    case "recordId":
+                        recordId = intValue(parser);
+                        break;
+                    case "gameId":
+                        gameId = intValue(parser);
+                        break;
+                    case "username":
+                        username = stringValue(parser);
+                        break;
+                    case "score":
+                        score = intValue(parser);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public Record build() {
+                Record record = new Record(recordId, gameId, username, score);
+                recordId = 0;
+                gameId = 0;
+                username = null;
+                score = 0;
+                return record;
+            }
+        };
+    }
+
+    static JsonArrayStream.Reader<Achievement> achievement() {
+        return new JsonArrayStream.Reader<Achievement>() {
+            private int gameId;
+            private int achievementId;
+            private String achievementName;
+            private String description;
+            private int achieveCount;
+
+            @Override
+            public void field(String name, JsonParser parser) throws IOException {
+                switch (name) {
+                    case "gameId":
+                        gameId = intValue(parser);
+                        break;
+                    case "achievementId":
+                        achievementId = intValue(parser);
+                        break;
+                    case "achievementName":
+                        achievementName = stringValue(parser);
+                        break;
+                    case "description":
+                        description = stringValue(parser);
+                        break;
+                    case "achieveCount":
+                        achieveCount = intValue(parser);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public Achievement build() {
+                Achievement achievement = new Achievement(gameId, achievementId, achievementName, description, achieveCount);
+                gameId = 0;
+                achievementId = 0;
+                achievementName = null;
+                description = null;
+                achieveCount = 0;
+                return achievement;
+            }
+        };
+    }
+
+    static JsonArrayStream.Reader<GameSave> gameSave() {
+        return new JsonArrayStream.Reader<GameSave>() {
+            private String username;
+            private int gameId;
+            private String saveName;
+            private Instant savedTime;
+
+            @Override
+            public void field(String name, JsonParser parser) throws IOException {
+                switch (name) {
+                    case "username":
+                        username = stringValue(parser);
+                        break;
+                    case "gameId":
+                        gameId = intValue(parser);
+                        break;
+                    case "saveName":
+                        saveName = stringValue(parser);
+                        break;
+                    case "savedTime":
+                        savedTime = instantValue(parser);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public GameSave build() {
+                GameSave gameSave = new GameSave(username, gameId, saveName, savedTime);
+                username = null;
+                gameId = 0;
+                saveName = null;
+                savedTime = null;
+                return gameSave;
+            }
+        };
+    }
+
+    static JsonArrayStream.Reader<Friend> friend() {
+        return new JsonArrayStream.Reader<Friend>() {
+            private String username;
+            private boolean online;
+            private Instant lastSeen;
+
+            @Override
+            public void field(String name, JsonParser parser) throws IOException {
+                switch (name) {
+                    case "username":
+                        username = stringValue(parser);
+                        break;
+                    case "online":
+                        online = booleanValue(parser);
+                        break;
+                    case "lastSeen":
+                        lastSeen = instantValue(parser);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public Friend build() {
+                Friend friend = new Friend(username, online, lastSeen);
+                username = null;
+                online = false;
+                lastSeen = null;
+                return friend;
+            }
+        };
+    }
+
+    private static int intValue(JsonParser parser) throws IOException {
+        return parser.getValueAsInt();
+    }
+
+    private static boolean booleanValue(JsonParser parser) throws IOException {
+        return parser.getValueAsBoolean();
+    }
+
+    private static String stringValue(JsonParser parser) throws IOException {
+        return parser.getValueAsString();
+    }
+
+    private static Instant instantValue(JsonParser parser) throws IOException {
+        String text = stringValue(parser);
+        return text == null ? null : Instant.parse(text);
+    }
+}
@@ -0,0 +1,219 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+
+/**
+ * Cache of the top records of a game
+ *
+ * The largest top fetched so far is kept sorted by score in parallel arrays, and
+ * any smaller top is served from it. It is fetched again once the ttl expires or
+ * after a record is added. While there are subscribers it is also refreshed every
+ * ttl, and every subscriber is notified when its top changes.
+ *
+ * Each invalidation starts a new generation, the result of a fetch started
+ * before it is dropped and fetched again, so an added record is never hidden by
+ * a top read before it.
+ */
+class Leaderboard {
+
+    static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    private final Vertx vertx;
+    private final IntFunction<Future<Record[]>> fetch;
+    private final long ttl;
+    private final Map<Handler<Record[]>, Integer> subscribers = new ConcurrentHashMap<>();
+
+    private int[] recordIds = new int[0];
+    private int[] gameIds = new int[0];
+    private String[] usernames = new String[0];
+    private int[] scores = new int[0];
+    private int fetchedNum;
+    private long fetchedAt;
+    private boolean stale = true;
+    private long generation;
+
+    private Future<Void> fetching;
+    private int fetchingNum;
+    private long timer = -1;
+
+    /**
+     * @param vertx The vertx to schedule refreshes on
+     *
+     * @param fetch Fetches the top records from the server
+     *
+     * @param ttl Milliseconds the cached top is served
+     */
+    Leaderboard(Vertx vertx, IntFunction<Future<Record[]>> fetch, long ttl) {
+        this.vertx = vertx;
+        this.fetch = fetch;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Get the top records, from cache when possible
+     */
+    synchronized Future<Record[]> rank(int rankNum) {
+        if (!stale && rankNum <= fetchedNum && System.nanoTime() - fetchedAt < ttl) {
+            return Future.succeededFuture(top(rankNum));
+        }
+        return refresh(rankNum).map(it -> top(rankNum));
+    }
+
+    /**
+     * Mark the cached top as outdated, refreshing it at once if there are subscribers
+     */
+    synchronized void invalidate() {
+        generation++;
+        stale = true;
+        // a fetch in flight may predate the change, so it is not joined
+        fetching = null;
+        if (!subscribers.isEmpty()) {
+            refresh(0);
+        }
+    }
+
+    /**
+     * Call handler with the top records once fetched and whenever they change
+     */
+    Future<Void> subscribe(int rankNum, Handler<Record[]> handler) {
+        return rank(rankNum).map(records -> {
+            synchronized (this) {
+                subscribers.put(handler, rankNum);
+                if (timer == -1) {
+                    timer = vertx.setPeriodic(TimeUnit.NANOSECONDS.toMillis(ttl), it -> {
+                        synchronized (this) {
+                            refresh(0);
+                        }
+                    });
+                }
+            }
+            handler.handle(records);
+            return null;
+        });
+    }
+
+    synchronized void unsubscribe(Handler<Record[]> handler) {
+        subscribers.remove(handler);
+        if (subscribers.isEmpty() && timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+    }
+
+    /**
+     * Drop every subscriber and stop refreshing
+     */
+    synchronized void close() {
+        subscribers.clear();
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+    }
+
+    /**
+     * Fetch a top large enough for rankNum, the current top and every subscriber
+     */
+    private Future<Void> refresh(int rankNum) {
+        int num = Math.max(rankNum, fetchedNum);
+        for (int subscribed : subscribers.values()) {
+            num = Math.max(num, subscribed);
+        }
+        if (fetching != null && num <= fetchingNum) {
+            return fetching;
+        }
+        int fetchNum = num;
+        long started = generation;
+        Future<Void> future = fetch.apply(fetchNum).compose(records -> {
+            if (update(fetchNum, records, started)) {
+                return Future.succeededFuture();
+            }
+            // invalidated while fetching, so the records may be outdated
+            synchronized (this) {
+                return refresh(fetchNum);
+            }
+        });
+        fetching = future;
+        fetchingNum = fetchNum;
+        future.onComplete(it -> {
+            synchronized (this) {
+                if (fetching == future) {
+                    fetching = null;
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Replace the cached top, unless it was invalidated since the fetch started
+     *
+     * @return whether the top was replaced
+     */
+    private boolean update(int num, Record[] records, long started) {
+        Record[] sorted = records.clone();
+        Arrays.sort(sorted, (a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        Map<Handler<Record[]>, Record[]> changed = new HashMap<>();
+        synchronized (this) {
+            if (started != generation) {
+                return false;
+            }
+            int[] oldIds = recordIds;
+            int[] oldScores = scores;
+            int size = sorted.length;
+            recordIds = new int[size];
+            gameIds = new int[size];
+            usernames = new String[size];
+            scores = new int[size];
+            for (int i = 0; i < size; i++) {
+                recordIds[i] = sorted[i].getRecordId();
+                gameIds[i] = sorted[i].getGameId();
+                usernames[i] = sorted[i].getUsername();
+                scores[i] = sorted[i].getScore();
+            }
+            fetchedNum = num;
+            fetchedAt = System.nanoTime();
+            stale = false;
+            subscribers.forEach((handler, rankNum) -> {
+                if (!samePrefix(oldIds, oldScores, rankNum)) {
+                    changed.put(handler, top(rankNum));
+                }
+            });
+        }
+        changed.forEach(Handler::handle);
+        return true;
+    }
+
+    private boolean samePrefix(int[] oldIds, int[] oldScores, int rankNum) {
+        int oldSize = Math.min(oldIds.length, rankNum);
+        int newSize = Math.min(recordIds.length, rankNum);
+        if (oldSize != newSize) {
+            return false;
+        }
+        for (int i = 0; i < newSize; i++) {
+            if (oldIds[i] != recordIds[i] || oldScores[i] != scores[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized Record[] top(int rankNum) {
+        int size = Math.min(rankNum, recordIds.length);
+        Record[] records = new Record[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record(recordIds[i], gameIds[i], usernames[i], scores[i]);
+        }
+        return records;
+    }
+}
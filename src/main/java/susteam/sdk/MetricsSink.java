@@ -0,0 +1,72 @@
+package susteam.sdk;
+
+
+/**
+ * Receiver of the metrics of the sdk, set by {@link SdkOptions#setMetricsSink(MetricsSink)}
+ *
+ * Methods are called on the event loop for every request and every cached read,
+ * so they must be quick and must not block. See {@link SdkMetrics} for a sink
+ * keeping latency histograms in memory, and {@link MicrometerMetricsSink} for a
+ * sink publishing to a Micrometer registry.
+ */
+public interface MetricsSink {
+
+    /**
+     * Error of a request answered by the server with an error
+     */
+    String ANSWERED = "answered";
+
+    /**
+     * Error of a request answered with a 4xx status
+     */
+    String CLIENT_ERROR = "client_error";
+
+    /**
+     * Error of a request answered with a 5xx status
+     */
+    String SERVER_ERROR = "server_error";
+
+    /**
+     * Error of a request not answered in time
+     */
+    String TIMEOUT = "timeout";
+
+    /**
+     * Error of a request whose connection failed or was closed
+     */
+    String CONNECTION = "connection";
+
+    /**
+     * Error of a request failed otherwise
+     */
+    String FAILURE = "failure";
+
+    /**
+     * Record a request, once its response is received or it failed
+     *
+     * @param endpoint Method and path of the request, with its arguments replaced by {}
+     *
+     * @param latency Nanoseconds from sending the request to receiving its response
+     *
+     * @param bytesIn Bytes of the response body received
+     *
+     * @param bytesOut Bytes of the request body, 0 if unknown or streamed
+     *
+     * @param error Kind of the failure, one of {@link #ANSWERED}, {@link #CLIENT_ERROR},
+     *              {@link #SERVER_ERROR}, {@link #TIMEOUT}, {@link #CONNECTION} and
+     *              {@link #FAILURE}, null if succeeded
+     *
+     * @param traceId Trace id sent with the request, null if tracing is disabled
+     */
+    void request(String endpoint, long latency, long bytesIn, long bytesOut, String error, String traceId);
+
+    /**
+     * Record a read served from the response cache or not
+     *
+     * @param method Name of the method, see {@link SdkOptions#setResponseCacheTtl(String, long)}
+     *
+     * @param hit Whether the read was served from the cache
+     */
+    default void cache(String method, boolean hit) {
+    }
+}
@@ -0,0 +1,64 @@
+package susteam.sdk;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Sink publishing the metrics of the sdk to a Micrometer registry
+ *
+ * Requests are timed by susteam.sdk.requests, tagged by endpoint and error,
+ * one of the few kinds of {@link MetricsSink} or "none" if succeeded, with
+ * percentile histograms. Bytes are summarized by
+ * susteam.sdk.bytes.in and susteam.sdk.bytes.out, and cached reads counted by
+ * susteam.sdk.cache tagged by method and result. Give it a JmxMeterRegistry to
+ * expose the metrics over JMX.
+ *
+ * Micrometer is not a dependency of the sdk, it must be on the classpath to use this sink.
+ */
+public class MicrometerMetricsSink implements MetricsSink {
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+
+    /**
+     * @param registry The registry to publish to
+     */
+    public MicrometerMetricsSink(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void request(String endpoint, long latency, long bytesIn, long bytesOut, String error, String traceId) {
+        Timer.builder("susteam.sdk.requests")
+                .tag("endpoint", endpoint)
+                .tag("error", error == null ? NONE : error)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(latency, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("susteam.sdk.bytes.in")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(bytesIn);
+        DistributionSummary.builder("susteam.sdk.bytes.out")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(bytesOut);
+    }
+
+    @Override
+    public void cache(String method, boolean hit) {
+        Counter.builder("susteam.sdk.cache")
+                .tag("method", method)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+}
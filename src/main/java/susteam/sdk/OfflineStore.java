@@ -0,0 +1,251 @@
+package susteam.sdk;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Local store of a session, used while the server is unreachable
+ *
+ * The store keeps the last result of every read served offline, and a journal of
+ * the writes made offline, in order, to be replayed once the server is back.
+ * Saves written offline are copied next to it until replayed.
+ *
+ * The store lives in memory and is written to a json file under the sdk temp dir
+ * after every change, as ordered blocking tasks of one context. It is read back
+ * by the first of these tasks, see {@link #loaded()}. If it cannot be read back,
+ * it is kept in memory only so the file is not overwritten.
+ */
+class OfflineStore {
+
+    private final Context context;
+    private final File file;
+    private final File saves;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Promise<Void> loaded = Promise.promise();
+
+    private JsonObject reads = new JsonObject();
+    private JsonArray writes = new JsonArray();
+
+    /**
+     * @param vertx The vertx to run file IO on
+     *
+     * @param gameKey Key of the game, naming the store
+     *
+     * @param token User token, naming the store by its hash
+     */
+    OfflineStore(Vertx vertx, String gameKey, String token) {
+        this.context = vertx.getOrCreateContext();
+        String owner = SaveSync.hex(SaveSync.sha256().digest(token.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        File dir = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/offline/" + gameKey + "/" + owner);
+        this.file = new File(dir, "store.json");
+        this.saves = new File(dir, "saves");
+        context.runOnContext(v -> context.<JsonObject>executeBlocking(blocking -> {
+            try {
+                blocking.complete(file.isFile() ? new JsonObject(Buffer.buffer(Files.readAllBytes(file.toPath()))) : null);
+            } catch (IOException | RuntimeException e) {
+                blocking.fail(e);
+            }
+        }, true, read -> {
+            if (read.failed()) {
+                loaded.fail(read.cause());
+                return;
+            }
+            boolean changed = load(read.result());
+            loaded.complete();
+            if (changed) {
+                persist();
+            }
+        }));
+    }
+
+    /**
+     * Get the future of reading the store back from its file
+     *
+     * Results and writes kept before it is read back are merged with the ones read.
+     *
+     * @return the future, failed if the file cannot be read
+     */
+    Future<Void> loaded() {
+        return loaded.future();
+    }
+
+    /**
+     * Merge the store read back with the results and writes kept meanwhile
+     *
+     * @return whether anything was kept meanwhile
+     */
+    private synchronized boolean load(JsonObject json) {
+        boolean changed = !reads.isEmpty() || !writes.isEmpty();
+        if (json != null) {
+            JsonObject kept = json.getJsonObject("reads", new JsonObject());
+            kept.getMap().putAll(reads.getMap());
+            reads = kept;
+            JsonArray journaled = json.getJsonArray("writes", new JsonArray());
+            journaled.addAll(writes);
+            writes = journaled;
+        }
+        return changed;
+    }
+
+    /**
+     * Get the last result of a read, as json
+     *
+     * @return the result, or null if never read
+     */
+    synchronized Object get(String key) {
+        return reads.getValue(key);
+    }
+
+    /**
+     * Keep the result of a read, as json
+     */
+    synchronized void put(String key, Object value) {
+        reads.put(key, value);
+        persist();
+    }
+
+    /**
+     * Get whether there are writes not replayed yet
+     */
+    synchronized boolean pending() {
+        return !writes.isEmpty();
+    }
+
+    /**
+     * Get the oldest write not replayed yet
+     *
+     * @return the write, or null if none
+     */
+    synchronized JsonObject next() {
+        return writes.isEmpty() ? null : writes.getJsonObject(0);
+    }
+
+    /**
+     * Journal a write to replay
+     */
+    synchronized void journal(JsonObject write) {
+        writes.add(write);
+        persist();
+    }
+
+    /**
+     * Drop the writes of a save not replayed yet, superseded by a newer one
+     */
+    synchronized void supersede(String saveName) {
+        JsonArray kept = new JsonArray();
+        for (int i = 0; i < writes.size(); i++) {
+            JsonObject write = writes.getJsonObject(i);
+            if (!saveName.equals(write.getString("saveName"))) {
+                kept.add(write);
+            }
+        }
+        writes = kept;
+        persist();
+    }
+
+    /**
+     * Drop a write once replayed, or found to conflict
+     */
+    synchronized void done(JsonObject write) {
+        writes.remove(write);
+        persist();
+    }
+
+    /**
+     * Get the copy of a save written offline
+     */
+    File save(String saveName) {
+        return new File(saves, saveName);
+    }
+
+    /**
+     * Copy a save written offline, replacing any older copy
+     *
+     * @return the future
+     */
+    Future<Void> keep(String saveName, File source) {
+        Promise<Void> promise = Promise.promise();
+        context.<Void>executeBlocking(blocking -> {
+            try {
+                saves.mkdirs();
+                Files.copy(source.toPath(), save(saveName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail("file open fail");
+            }
+        }, true, promise);
+        return promise.future();
+    }
+
+    /**
+     * Write content saved offline, replacing any older copy
+     *
+     * @return the future
+     */
+    Future<Void> keep(String saveName, Buffer data) {
+        Promise<Void> promise = Promise.promise();
+        context.<Void>executeBlocking(blocking -> {
+            try {
+                saves.mkdirs();
+                Files.write(save(saveName).toPath(), data.getBytes());
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail("file open fail");
+            }
+        }, true, promise);
+        return promise.future();
+    }
+
+    /**
+     * Delete the copy of a save once replayed
+     */
+    void forget(String saveName) {
+        context.<Void>executeBlocking(blocking -> {
+            save(saveName).delete();
+            blocking.complete();
+        }, true, it -> {});
+    }
+
+    /**
+     * Write the store to its file, coalescing changes made before the write runs
+     */
+    private void persist() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        context.runOnContext(v -> context.<Void>executeBlocking(blocking -> {
+            scheduled.set(false);
+            if (!loaded.future().succeeded()) {
+                // written once read back, or never if unreadable so the file is not lost
+                blocking.complete();
+                return;
+            }
+            Buffer json;
+            synchronized (this) {
+                json = new JsonObject().put("reads", reads.copy()).put("writes", writes.copy()).toBuffer();
+            }
+            try {
+                file.getParentFile().mkdirs();
+                File temp = new File(file.getPath() + ".tmp");
+                Files.write(temp.toPath(), json.getBytes());
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, it -> {}));
+    }
+}
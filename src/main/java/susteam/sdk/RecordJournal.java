@@ -0,0 +1,318 @@
+package susteam.sdk;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+
+/**
+ * Write-behind queue of score records
+ *
+ * Submitted scores are appended to a journal file and sent to the server in the
+ * background, in order. The journal starts with the offset of the first score not
+ * yet acknowledged by the server, so scores submitted while offline or before a
+ * crash are sent again on next init. Every score is acknowledged on disk once the
+ * server answered it, before the next is sent, so only a score in flight during a
+ * crash can be sent twice. Once every score is acknowledged the journal is
+ * truncated. A score the server answers with an error is dropped, so it does not
+ * hold back the scores submitted after it.
+ *
+ * Journal IO runs as ordered blocking tasks of one context, sending runs on its
+ * event loop.
+ */
+class RecordJournal {
+
+    static final long RETRY_DELAY = 5000;
+
+    private static final int HEADER = Long.BYTES;
+    private static final int ENTRY = Integer.BYTES;
+    private static final int BATCH = 64;
+
+    private final Vertx vertx;
+    private final Context context;
+    private final IntFunction<Future<Void>> send;
+    private final File file;
+    private final Queue<Submission> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private FileChannel channel;
+    private long acked;
+    private final Promise<Void> closing = Promise.promise();
+
+    private boolean sending;
+    private boolean closeRequested;
+    private volatile boolean closed;
+
+    /**
+     * @param vertx The vertx to run journal IO and sending on
+     *
+     * @param gameKey Key of the game, naming the journal
+     *
+     * @param token User token, naming the journal by its hash
+     *
+     * @param send Sends one score to the server
+     */
+    RecordJournal(Vertx vertx, String gameKey, String token, IntFunction<Future<Void>> send) {
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.send = send;
+        String owner = SaveSync.hex(SaveSync.sha256().digest(token.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        this.file = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/records/" + gameKey + "/" + owner + ".journal");
+        context.runOnContext(v -> context.<Void>executeBlocking(blocking -> {
+            try {
+                open();
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, opened -> pump()));
+    }
+
+    /**
+     * Submit a score without waiting for the server, it is journaled and sent in the background
+     *
+     * @return the future, completed once the score is journaled
+     */
+    Future<Void> submit(int score) {
+        Submission submission = new Submission(score);
+        submitted.add(submission);
+        if (scheduled.compareAndSet(false, true)) {
+            context.runOnContext(v -> {
+                scheduled.set(false);
+                context.<Void>executeBlocking(blocking -> {
+                    append();
+                    blocking.complete();
+                }, true, appended -> pump());
+            });
+        }
+        return submission.promise.future();
+    }
+
+    /**
+     * Journal the scores still submitted and close the journal
+     *
+     * A score being sent is acknowledged before the journal is closed, scores not
+     * yet sent stay in the journal and are sent on next init.
+     *
+     * @return the future
+     */
+    Future<Void> close() {
+        context.runOnContext(v -> {
+            if (closeRequested) {
+                return;
+            }
+            closeRequested = true;
+            if (!sending) {
+                closeChannel();
+            }
+        });
+        return closing.future();
+    }
+
+    private void closeChannel() {
+        context.<Void>executeBlocking(blocking -> {
+            append();
+            closed = true;
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, closing);
+    }
+
+    private void open() throws IOException {
+        file.getParentFile().mkdirs();
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER) {
+            acked = HEADER;
+            writeAcked();
+            channel.truncate(HEADER);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        acked = header.getLong(0);
+        // drop a score torn by a crash while appending
+        long size = channel.size();
+        channel.truncate(size - (size - HEADER) % ENTRY);
+        if (acked < HEADER || acked > channel.size()) {
+            acked = HEADER;
+        }
+    }
+
+    /**
+     * Write the submitted scores to the journal, failing their futures if it cannot be written
+     */
+    private void append() {
+        if (submitted.isEmpty()) {
+            return;
+        }
+        List<Submission> appended = new ArrayList<>();
+        ByteBuffer entries = ByteBuffer.allocate(ENTRY * submitted.size() + ENTRY * BATCH);
+        Submission submission;
+        while (entries.remaining() >= ENTRY && (submission = submitted.poll()) != null) {
+            entries.putInt(submission.score);
+            appended.add(submission);
+        }
+        entries.flip();
+        Throwable failure = null;
+        if (channel == null || closed) {
+            failure = new IOException("record journal is not open");
+        } else {
+            long start = -1;
+            try {
+                start = channel.size();
+                long position = start;
+                while (entries.hasRemaining()) {
+                    position += channel.write(entries, position);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                // do not leave part of the scores to be sent
+                try {
+                    if (start >= 0) {
+                        channel.truncate(start);
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        for (Submission it : appended) {
+            if (failure == null) {
+                it.promise.complete();
+            } else {
+                it.promise.fail(failure);
+            }
+        }
+        if (!submitted.isEmpty()) {
+            append();
+        }
+    }
+
+    private void writeAcked() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putLong(0, acked);
+        channel.write(header, 0);
+    }
+
+    /**
+     * Send the next batch of unacknowledged scores, if not already sending
+     */
+    private void pump() {
+        if (sending || closeRequested || closed || channel == null) {
+            return;
+        }
+        sending = true;
+        context.<int[]>executeBlocking(blocking -> {
+            try {
+                int count = (int) Math.min(BATCH, (channel.size() - acked) / ENTRY);
+                ByteBuffer entries = ByteBuffer.allocate(count * ENTRY);
+                channel.read(entries, acked);
+                int[] scores = new int[count];
+                for (int i = 0; i < count; i++) {
+                    scores[i] = entries.getInt(i * ENTRY);
+                }
+                blocking.complete(scores);
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, read -> {
+            if (read.failed() || read.result().length == 0) {
+                sent(false);
+                return;
+            }
+            sendFrom(read.result(), 0);
+        });
+    }
+
+    /**
+     * Send the scores of a batch one by one, each acknowledged before the next is sent
+     */
+    private void sendFrom(int[] scores, int index) {
+        if (index == scores.length || closeRequested) {
+            sent(index == scores.length);
+            return;
+        }
+        send.apply(scores[index]).onComplete(res -> {
+            if (res.failed() && CircuitBreaker.unanswered(res.cause())) {
+                context.runOnContext(v -> sent(false));
+                return;
+            }
+            // a score rejected by the server would be rejected again, drop it too
+            acknowledge().onComplete(written -> {
+                if (written.succeeded()) {
+                    sendFrom(scores, index + 1);
+                } else {
+                    sent(false);
+                }
+            });
+        });
+    }
+
+    /**
+     * Acknowledge the next score, on disk so it is not sent again after a crash
+     */
+    private Future<Void> acknowledge() {
+        Promise<Void> promise = Promise.promise();
+        context.<Void>executeBlocking(blocking -> {
+            try {
+                acked += ENTRY;
+                if (acked == channel.size()) {
+                    acked = HEADER;
+                    channel.truncate(HEADER);
+                }
+                writeAcked();
+                channel.force(false);
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, promise);
+        return promise.future();
+    }
+
+    /**
+     * Stop sending, then close the journal if asked, or else send the next batch
+     *
+     * @param more Whether the batch was sent, so the next can be sent at once
+     */
+    private void sent(boolean more) {
+        sending = false;
+        if (closeRequested) {
+            closeChannel();
+        } else if (more) {
+            pump();
+        } else {
+            vertx.setTimer(RETRY_DELAY, it -> pump());
+        }
+    }
+
+    private static class Submission {
+
+        private final int score;
+        private final Promise<Void> promise = Promise.promise();
+
+        private Submission(int score) {
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package susteam.sdk;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpFrame;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.StreamPriority;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetSocket;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.impl.HttpContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Interceptor of the web client measuring every request and tagging it with a trace id
+ *
+ * It is only added to the client when a sink or a trace header is set, so
+ * requests pay nothing for metrics otherwise. The bytes of a response are counted
+ * as they are received, so chunked and piped responses are measured too.
+ *
+ * It relies on the internal interceptor API of the web client, see SusteamClient.
+ */
+class RequestMetrics implements Handler<HttpContext<?>> {
+
+    private static final String START = "susteam.metrics.start";
+    private static final String BYTES_OUT = "susteam.metrics.bytesOut";
+    private static final String TRACE_ID = "susteam.metrics.traceId";
+
+    /**
+     * Literal path segments, every other segment is an argument
+     */
+    private static final Set<String> SEGMENTS = new HashSet<>(Arrays.asList(
+            "api", "token", "gameKey", "check", "key", "achievement", "achieveProcess", "record", "max",
+            "save", "delete", "manifest", "chunk", "commit", "friend", "invite", "presence"
+    ));
+
+    private final MetricsSink sink;
+    private final String traceHeader;
+
+    /**
+     * @param sink Receiver of the metrics, or null to only send trace ids
+     *
+     * @param traceHeader Header carrying the trace id of a request, or null to send none
+     */
+    RequestMetrics(MetricsSink sink, String traceHeader) {
+        this.sink = sink;
+        this.traceHeader = traceHeader;
+    }
+
+    @Override
+    public void handle(HttpContext<?> context) {
+        switch (context.phase()) {
+            case PREPARE_REQUEST:
+                if (traceHeader != null) {
+                    String traceId = UUID.randomUUID().toString();
+                    context.set(TRACE_ID, traceId);
+                    context.request().putHeader(traceHeader, traceId);
+                }
+                break;
+            case SEND_REQUEST:
+                context.set(START, System.nanoTime());
+                context.set(BYTES_OUT, size(context.body()));
+                break;
+            case RECEIVE_RESPONSE:
+                if (sink != null && !(context.clientResponse() instanceof CountingResponse)) {
+                    // receive the response again through a counting one, running the interceptors again
+                    context.receiveResponse(new CountingResponse(context.clientResponse()));
+                    return;
+                }
+                break;
+            case DISPATCH_RESPONSE:
+                record(context, context.response(), error(context.response()));
+                break;
+            case FAILURE:
+                record(context, null, error(context.failure()));
+                break;
+            default:
+                break;
+        }
+        context.next();
+    }
+
+    private void record(HttpContext<?> context, HttpResponse<?> response, String error) {
+        Long start = context.get(START);
+        if (sink == null || start == null) {
+            return;
+        }
+        Long bytesOut = context.get(BYTES_OUT);
+        HttpClientResponse received = context.clientResponse();
+        long bytesIn = received instanceof CountingResponse ? ((CountingResponse) received).bytes : 0;
+        // sent, so the client request holds the method and uri actually requested
+        HttpClientRequest sent = context.clientRequest();
+        sink.request(endpoint(sent.method().name(), sent.uri()),
+                System.nanoTime() - start, bytesIn, bytesOut == null ? 0 : bytesOut, error, context.get(TRACE_ID));
+    }
+
+    /**
+     * Get the error of a response by its status, or by its body if buffered, null if successful
+     */
+    private static String error(HttpResponse<?> response) {
+        if (response.statusCode() >= 500) {
+            return MetricsSink.SERVER_ERROR;
+        }
+        if (response.statusCode() >= 400) {
+            return MetricsSink.CLIENT_ERROR;
+        }
+        Object body = response.body();
+        if (body instanceof JsonObject && Boolean.FALSE.equals(((JsonObject) body).getBoolean("success"))) {
+            return MetricsSink.ANSWERED;
+        }
+        return null;
+    }
+
+    /**
+     * Get the error of a request failed without a response
+     */
+    private static String error(Throwable failure) {
+        if (failure instanceof TimeoutException) {
+            return MetricsSink.TIMEOUT;
+        }
+        if (failure instanceof IOException || failure instanceof VertxException) {
+            return MetricsSink.CONNECTION;
+        }
+        return MetricsSink.FAILURE;
+    }
+
+    /**
+     * Get the size of a request body, 0 if streamed
+     */
+    private static long size(Object body) {
+        if (body instanceof Buffer) {
+            return ((Buffer) body).length();
+        }
+        if (body instanceof JsonObject) {
+            return ((JsonObject) body).toBuffer().length();
+        }
+        if (body instanceof JsonArray) {
+            return ((JsonArray) body).toBuffer().length();
+        }
+        return 0;
+    }
+
+    /**
+     * Get the endpoint of a request, replacing the arguments in its path by {}
+     */
+    static String endpoint(String method, String uri) {
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        StringBuilder endpoint = new StringBuilder(method).append(' ');
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            endpoint.append('/').append(SEGMENTS.contains(segment) ? segment : "{}");
+        }
+        return endpoint.toString();
+    }
+
+    /**
+     * Response counting the bytes of its body as they are handled
+     */
+    private static class CountingResponse implements HttpClientResponse {
+
+        private final HttpClientResponse response;
+        private long bytes;
+
+        private CountingResponse(HttpClientResponse response) {
+            this.response = response;
+        }
+
+        private Handler<Buffer> counting(Handler<Buffer> handler) {
+            return handler == null ? null : buffer -> {
+                bytes += buffer.length();
+                handler.handle(buffer);
+            };
+        }
+
+        @Override
+        public HttpClientResponse fetch(long amount) {
+            response.fetch(amount);
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse resume() {
+            response.resume();
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse exceptionHandler(Handler<Throwable> handler) {
+            response.exceptionHandler(handler);
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse handler(Handler<Buffer> handler) {
+            response.handler(counting(handler));
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse pause() {
+            response.pause();
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse endHandler(Handler<Void> handler) {
+            response.endHandler(handler);
+            return this;
+        }
+
+        @Override
+        public HttpVersion version() {
+            return response.version();
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String statusMessage() {
+            return response.statusMessage();
+        }
+
+        @Override
+        public MultiMap headers() {
+            return response.headers();
+        }
+
+        @Override
+        public String getHeader(String headerName) {
+            return response.getHeader(headerName);
+        }
+
+        @Override
+        public String getHeader(CharSequence headerName) {
+            return response.getHeader(headerName);
+        }
+
+        @Override
+        public String getTrailer(String trailerName) {
+            return response.getTrailer(trailerName);
+        }
+
+        @Override
+        public MultiMap trailers() {
+            return response.trailers();
+        }
+
+        @Override
+        public List<String> cookies() {
+            return response.cookies();
+        }
+
+        @Override
+        public HttpClientResponse bodyHandler(Handler<Buffer> bodyHandler) {
+            response.bodyHandler(counting(bodyHandler));
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse customFrameHandler(Handler<HttpFrame> handler) {
+            response.customFrameHandler(handler);
+            return this;
+        }
+
+        @Override
+        public NetSocket netSocket() {
+            return response.netSocket();
+        }
+
+        @Override
+        public HttpClientRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public HttpClientResponse streamPriorityHandler(Handler<StreamPriority> handler) {
+            response.streamPriorityHandler(handler);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package susteam.sdk;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cache of the results of read endpoints
+ *
+ * Results are kept by method and arguments for the ttl of their endpoint, the
+ * method name, and the least recently used ones are evicted once the estimated
+ * size of all results exceeds the limit. Writes remove the results they change.
+ * A result fetched while its entry was removed is not cached, so a read racing a
+ * write cannot cache the value from before the write.
+ */
+class ResponseCache {
+
+    static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private static final int ENTRY_BYTES = 64;
+
+    private final long maxBytes;
+    private final Map<String, Long> ttls;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes Max estimated size of all cached results
+     *
+     * @param ttls Milliseconds the results of an endpoint are cached, by method name
+     */
+    ResponseCache(long maxBytes, Map<String, Long> ttls) {
+        this.maxBytes = maxBytes;
+        this.ttls = new HashMap<>(ttls);
+    }
+
+    /**
+     * Get whether the results of an endpoint are cached at all
+     */
+    boolean caches(String endpoint) {
+        Long ttl = ttls.get(endpoint);
+        return ttl != null && ttl > 0;
+    }
+
+    /**
+     * Get a cached result, counting a hit or a miss
+     *
+     * @return the result, or null if not cached or expired
+     */
+    synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Get the generation to pass to {@link #put(String, String, Object, long)}
+     * for a result fetched from now
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache a result unless an entry was removed since it started being fetched
+     */
+    synchronized void put(String endpoint, String key, Object value, long fetchedGeneration) {
+        if (fetchedGeneration != generation || !caches(endpoint)) {
+            return;
+        }
+        remove(key);
+        Entry entry = new Entry(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttls.get(endpoint)), weigh(value));
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove the result of a call
+     */
+    synchronized void invalidate(String key) {
+        generation++;
+        remove(key);
+    }
+
+    /**
+     * Remove every result
+     */
+    synchronized void clear() {
+        generation++;
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Estimate the size of a result, the data classes print all their fields
+     */
+    private static long weigh(Object value) {
+        if (value instanceof Object[]) {
+            long bytes = ENTRY_BYTES;
+            for (Object element : (Object[]) value) {
+                bytes += weigh(element);
+            }
+            return bytes;
+        }
+        return ENTRY_BYTES + (value == null ? 0 : 2L * value.toString().length());
+    }
+
+    private static class Entry {
+
+        private final Object value;
+        private final long expiresAt;
+        private final long bytes;
+
+        Entry(Object value, long expiresAt, long bytes) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package susteam.sdk;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+
+/**
+ * Local cache of loaded game saves
+ *
+ * Saves are kept per game and user under the sdk temp dir. Next to every save
+ * is a metadata file recording its savedTime on the server, the validators sent
+ * by the server (ETag and Last-Modified) and the size and last modified time of
+ * the file, so an unchanged save does not need to be downloaded again.
+ *
+ * All methods but {@link #file(int, String, String)} do blocking file IO.
+ */
+final class SaveCache {
+
+    private SaveCache() {
+    }
+
+    /**
+     * Get the local file of a save, without creating its dir
+     */
+    static File file(int gameId, String username, String saveName) {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/" + gameId + "/" + username);
+        return new File(dir, saveName);
+    }
+
+    /**
+     * Get the metadata of a cached save
+     *
+     * @return the metadata, or null if the save is not cached or was changed locally
+     */
+    static JsonObject meta(File file) {
+        File meta = metaFile(file);
+        if (!meta.isFile() || !file.isFile()) {
+            return null;
+        }
+        try {
+            JsonObject json = new JsonObject(Buffer.buffer(Files.readAllBytes(meta.toPath())));
+            Long size = json.getLong("size");
+            Long modified = json.getLong("modified");
+            if (size == null || size != file.length() || modified == null || modified != file.lastModified()) {
+                return null;
+            }
+            return json;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Record the metadata of a downloaded save
+     *
+     * @param file The local file of the save
+     *
+     * @param savedTime savedTime of the save on the server, or null if unknown
+     *
+     * @param etag ETag header of the response, or null
+     *
+     * @param lastModified Last-Modified header of the response, or null
+     */
+    static void record(File file, String savedTime, String etag, String lastModified) throws IOException {
+        JsonObject json = new JsonObject()
+                .put("size", file.length())
+                .put("modified", file.lastModified());
+        if (savedTime != null) {
+            json.put("savedTime", savedTime);
+        }
+        if (etag != null) {
+            json.put("etag", etag);
+        }
+        if (lastModified != null) {
+            json.put("lastModified", lastModified);
+        }
+        File meta = metaFile(file);
+        File part = new File(meta.getPath() + ".part");
+        Files.write(part.toPath(), json.toBuffer().getBytes());
+        Files.move(part.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Forget the metadata of a save, so it is downloaded on next load
+     */
+    static void forget(File file) {
+        metaFile(file).delete();
+    }
+
+    private static File metaFile(File file) {
+        return new File(file.getPath() + ".meta");
+    }
+}
@@ -0,0 +1,40 @@
+package susteam.sdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+/**
+ * Compression of game saves
+ *
+ * Built-in codecs and the ones found on the classpath are in {@link SaveCodecs},
+ * other codecs can be added with {@link SaveCodecs#register(SaveCodec)}.
+ */
+public interface SaveCodec {
+
+    /**
+     * Get the name of the codec, recorded in the header of a compressed save
+     *
+     * @return the name, at most 255 ASCII characters
+     */
+    String name();
+
+    /**
+     * Wrap a stream so everything written to it is compressed
+     *
+     * @param out The stream receiving compressed bytes
+     *
+     * @return the compressing stream, closing it closes out
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Wrap a stream so everything read from it is decompressed
+     *
+     * @param in The stream of compressed bytes
+     *
+     * @return the decompressing stream, closing it closes in
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
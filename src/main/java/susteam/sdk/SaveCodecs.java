@@ -0,0 +1,211 @@
+package susteam.sdk;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * Registry of save codecs and the header format of compressed saves
+ *
+ * A compressed save starts with a magic number followed by the length and the
+ * name of its codec. Saves without the magic number are stored uncompressed,
+ * so saves written before compression was enabled still load.
+ */
+public final class SaveCodecs {
+
+    public static final SaveCodec DEFLATE = codec("deflate", DeflaterOutputStream::new, InflaterInputStream::new);
+
+    public static final SaveCodec GZIP = codec("gzip", GZIPOutputStream::new, GZIPInputStream::new);
+
+    private static final byte[] MAGIC = {(byte) 0x89, 'S', 'U', 'S', 'Z'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, SaveCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(DEFLATE);
+        register(GZIP);
+        registerIfPresent("zstd", "com.github.luben.zstd.ZstdOutputStream", "com.github.luben.zstd.ZstdInputStream");
+        registerIfPresent("lz4", "net.jpountz.lz4.LZ4FrameOutputStream", "net.jpountz.lz4.LZ4FrameInputStream");
+    }
+
+    private SaveCodecs() {
+    }
+
+    /**
+     * Register a codec so saves compressed with it can be loaded
+     *
+     * @param codec The codec
+     */
+    public static void register(SaveCodec codec) {
+        CODECS.put(codec.name(), codec);
+    }
+
+    /**
+     * Get a registered codec
+     *
+     * @param name Name of the codec, "deflate", "gzip", and "zstd" or "lz4" if on the classpath
+     *
+     * @return the codec, or null if it is not registered
+     */
+    public static SaveCodec get(String name) {
+        return CODECS.get(name);
+    }
+
+    /**
+     * Compress a file into another file, prefixed with the header
+     */
+    static void encode(File source, File target, SaveCodec codec) throws IOException {
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(target)) {
+            writeHeader(out, codec);
+            try (OutputStream compressed = codec.compress(out)) {
+                copy(in, compressed);
+            }
+        }
+    }
+
+    /**
+     * Compress a buffer, prefixed with the header
+     */
+    static Buffer encode(Buffer source, SaveCodec codec) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length() / 2 + MAGIC.length + 1);
+        writeHeader(out, codec);
+        try (OutputStream compressed = codec.compress(out)) {
+            compressed.write(source.getBytes());
+        }
+        return Buffer.buffer(out.toByteArray());
+    }
+
+    /**
+     * Move a downloaded save to its target, decompressing it if it has the header
+     */
+    static void decode(File source, File target) throws IOException {
+        SaveCodec codec;
+        try (InputStream in = new FileInputStream(source)) {
+            codec = readHeader(in);
+            if (codec != null) {
+                File decoded = new File(target.getPath() + ".decoded");
+                try (InputStream decompressed = codec.decompress(new BufferedInputStream(in, BUFFER_SIZE));
+                     OutputStream out = new FileOutputStream(decoded)) {
+                    copy(decompressed, out);
+                }
+                Files.move(decoded.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        if (codec == null) {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.delete(source.toPath());
+        }
+    }
+
+    private static void writeHeader(OutputStream out, SaveCodec codec) throws IOException {
+        byte[] name = codec.name().getBytes(StandardCharsets.US_ASCII);
+        out.write(MAGIC);
+        out.write(name.length);
+        out.write(name);
+    }
+
+    /**
+     * Read the header, leaving the stream after it
+     *
+     * @return the codec, or null if the stream has no header
+     */
+    private static SaveCodec readHeader(InputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        if (in.readNBytes(magic, 0, magic.length) != magic.length || !Arrays.equals(magic, MAGIC)) {
+            return null;
+        }
+        int length = in.read();
+        byte[] name = new byte[Math.max(length, 0)];
+        if (length < 0 || in.readNBytes(name, 0, length) != length) {
+            throw new IOException("save header broken");
+        }
+        SaveCodec codec = get(new String(name, StandardCharsets.US_ASCII));
+        if (codec == null) {
+            throw new IOException("save codec unknown: " + new String(name, StandardCharsets.US_ASCII));
+        }
+        return codec;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private static void registerIfPresent(String name, String compressor, String decompressor) {
+        try {
+            Constructor<?> compress = Class.forName(compressor).getConstructor(OutputStream.class);
+            Constructor<?> decompress = Class.forName(decompressor).getConstructor(InputStream.class);
+            register(codec(
+                    name,
+                    out -> (OutputStream) construct(compress, out),
+                    in -> (InputStream) construct(decompress, in)
+            ));
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            // not on the classpath
+        }
+    }
+
+    private static Object construct(Constructor<?> constructor, Object stream) throws IOException {
+        try {
+            return constructor.newInstance(stream);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private interface Wrapper<T> {
+        T wrap(T stream) throws IOException;
+    }
+
+    private static SaveCodec codec(String name, Wrapper<OutputStream> compress, Wrapper<InputStream> decompress) {
+        return new SaveCodec() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public OutputStream compress(OutputStream out) throws IOException {
+                return compress.wrap(out);
+            }
+
+            @Override
+            public InputStream decompress(InputStream in) throws IOException {
+                return decompress.wrap(in);
+            }
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+
+/**
+ * Delta upload of game saves
+ *
+ * A save is cut into content defined chunks with a gear rolling hash, so an edit
+ * only changes the chunks around it, and every chunk is identified by its SHA-256.
+ * The manifest of the last synced version is kept locally per user and save name.
+ * An unchanged save is not uploaded at all, otherwise the server is asked which
+ * chunks it misses and only those are uploaded. If the server does not support
+ * chunked saves the whole file is uploaded instead.
+ */
+class SaveSync {
+
+    private static final int MIN_CHUNK = 2 * 1024;
+    private static final int MAX_CHUNK = 64 * 1024;
+    private static final long BOUNDARY_MASK = 0x1FFFL << 51;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5375537465616dL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final Vertx vertx;
+    private final WebClient client;
+    private final String token;
+    private final String gameKey;
+    private final long requestTimeout;
+    private final File dir;
+
+    SaveSync(Vertx vertx, WebClient client, String token, String gameKey, long requestTimeout) {
+        this.vertx = vertx;
+        this.client = client;
+        this.token = token;
+        this.gameKey = gameKey;
+        this.requestTimeout = requestTimeout;
+        this.dir = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/manifest/" + gameKey);
+    }
+
+    /**
+     * Upload the chunks of a save changed since it was last synced
+     *
+     * @param username Name of current user
+     *
+     * @param file File need to be saved
+     *
+     * @param fullSave Upload of the whole file, used when the server has no chunked saves
+     *
+     * @return A void future
+     */
+    Future<Void> sync(String username, File file, Supplier<Future<Void>> fullSave) {
+        File synced = manifestFile(username, file.getName());
+        Promise<JsonObject> chunked = Promise.promise();
+        vertx.executeBlocking(promise -> {
+            try {
+                JsonObject manifest = chunk(file);
+                if (synced.exists()
+                        && manifest.equals(new JsonObject(Buffer.buffer(Files.readAllBytes(synced.toPath()))))) {
+                    promise.complete(null);
+                } else {
+                    promise.complete(manifest);
+                }
+            } catch (IOException e) {
+                promise.fail("file open fail");
+            }
+        }, false, chunked);
+
+        return chunked.future().compose(manifest -> {
+            if (manifest == null) {
+                return Future.succeededFuture();
+            }
+            String path = "/api/save/" + username + "/" + gameKey + "/" + file.getName();
+            return post(path + "/manifest", manifest)
+                    .compose(body -> {
+                        if (body == null) {
+                            return fullSave.get();
+                        }
+                        return upload(path, file, manifest, body.getJsonArray("missing"))
+                                .compose(it -> post(path + "/commit", manifest))
+                                .<Void>mapEmpty();
+                    })
+                    .compose(it -> record(synced, manifest));
+        });
+    }
+
+    /**
+     * Forget the last synced version of a save, so the next sync uploads it
+     *
+     * @param username Name of current user
+     *
+     * @param saveName The file name of the game save
+     */
+    void forget(String username, String saveName) {
+        vertx.fileSystem().delete(manifestFile(username, saveName).getPath(), it -> {});
+    }
+
+    private File manifestFile(String username, String saveName) {
+        return new File(dir, username + "/" + saveName + ".json");
+    }
+
+    private Future<Void> upload(String path, File file, JsonObject manifest, JsonArray missing) {
+        Set<String> wanted = missing.stream().map(String.class::cast).collect(Collectors.toSet());
+        Future<Void> uploaded = Future.succeededFuture();
+        long offset = 0;
+        for (Object it : manifest.getJsonArray("chunks")) {
+            JsonObject chunk = (JsonObject) it;
+            String hash = chunk.getString("hash");
+            int length = chunk.getInteger("length");
+            long start = offset;
+            offset += length;
+            if (!wanted.remove(hash)) {
+                continue;
+            }
+            uploaded = uploaded
+                    .compose(v -> read(file, start, length))
+                    .compose(data -> send(path + "/chunk/" + hash, data));
+        }
+        return uploaded;
+    }
+
+    private Future<Buffer> read(File file, long offset, int length) {
+        Promise<Buffer> promise = Promise.promise();
+        vertx.executeBlocking(blocking -> {
+            byte[] data = new byte[length];
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                in.seek(offset);
+                in.readFully(data);
+                blocking.complete(Buffer.buffer(data));
+            } catch (IOException e) {
+                blocking.fail("file open fail");
+            }
+        }, false, promise);
+        return promise.future();
+    }
+
+    private Future<Void> send(String uri, Buffer data) {
+        Promise<Void> promise = Promise.promise();
+        client.post(uri)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .putHeader("Content-Type", "application/octet-stream")
+                .as(BodyCodec.jsonObject())
+                .sendBuffer(data, res -> {
+                    if (res.failed()) {
+                        promise.fail(res.cause());
+                        return;
+                    }
+                    JsonObject body = res.result().body();
+                    if (body != null && Boolean.TRUE.equals(body.getBoolean("success"))) {
+                        promise.complete();
+                    } else {
+                        promise.fail(body == null ? "json format invalid" : body.getString("error"));
+                    }
+                });
+        return promise.future();
+    }
+
+    /**
+     * Post a manifest, the future holds null if the server has no chunked saves
+     */
+    private Future<JsonObject> post(String uri, JsonObject manifest) {
+        Promise<JsonObject> promise = Promise.promise();
+        client.post(uri)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .sendJson(manifest, res -> {
+                    if (res.failed()) {
+                        promise.fail(res.cause());
+                        return;
+                    }
+                    if (res.result().statusCode() == 404) {
+                        promise.complete(null);
+                        return;
+                    }
+                    JsonObject body;
+                    try {
+                        body = res.result().bodyAsJsonObject();
+                    } catch (RuntimeException e) {
+                        promise.fail("json format invalid");
+                        return;
+                    }
+                    if (body != null && Boolean.TRUE.equals(body.getBoolean("success"))) {
+                        promise.complete(body);
+                    } else {
+                        promise.fail(body == null ? "json format invalid" : body.getString("error"));
+                    }
+                });
+        return promise.future();
+    }
+
+    private Future<Void> record(File synced, JsonObject manifest) {
+        Promise<Void> promise = Promise.promise();
+        vertx.fileSystem().mkdirs(synced.getParent(), dirs -> {
+            if (dirs.failed()) {
+                promise.fail(dirs.cause());
+                return;
+            }
+            vertx.fileSystem().writeFile(synced.getPath(), manifest.toBuffer(), promise);
+        });
+        return promise.future();
+    }
+
+    /**
+     * Cut a file into content defined chunks
+     *
+     * @param file The file to cut
+     *
+     * @return the manifest, containing the size and the hash and length of every chunk
+     */
+    static JsonObject chunk(File file) throws IOException {
+        MessageDigest digest = sha256();
+        JsonArray chunks = new JsonArray();
+        byte[] chunk = new byte[MAX_CHUNK];
+        byte[] read = new byte[64 * 1024];
+        int length = 0;
+        long hash = 0;
+        long size = 0;
+
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(read)) != -1) {
+                size += n;
+                for (int i = 0; i < n; i++) {
+                    byte b = read[i];
+                    chunk[length++] = b;
+                    hash = (hash << 1) + GEAR[b & 0xff];
+                    if (length == MAX_CHUNK || (length >= MIN_CHUNK && (hash & BOUNDARY_MASK) == 0)) {
+                        chunks.add(chunkEntry(digest, chunk, length));
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+            }
+        }
+        if (length > 0) {
+            chunks.add(chunkEntry(digest, chunk, length));
+        }
+        return new JsonObject().put("size", size).put("chunks", chunks);
+    }
+
+    private static JsonObject chunkEntry(MessageDigest digest, byte[] chunk, int length) {
+        digest.update(chunk, 0, length);
+        return new JsonObject().put("hash", hex(digest.digest())).put("length", length);
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
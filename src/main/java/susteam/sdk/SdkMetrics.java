@@ -0,0 +1,121 @@
+package susteam.sdk;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Sink keeping the metrics of the sdk in memory
+ *
+ * Every endpoint counts its requests, its errors by kind and its bytes in and
+ * out, and records its latencies in a histogram from 1 microsecond to 1 minute
+ * with 3 significant digits. Every cached read method counts its hits and misses.
+ */
+public class SdkMetrics implements MetricsSink {
+
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+
+    @Override
+    public void request(String endpoint, long latency, long bytesIn, long bytesOut, String error, String traceId) {
+        Endpoint metrics = endpoints.computeIfAbsent(endpoint, it -> new Endpoint());
+        metrics.requests.increment();
+        metrics.bytesIn.add(bytesIn);
+        metrics.bytesOut.add(bytesOut);
+        metrics.latency.recordValue(Math.max(1, Math.min(MAX_LATENCY, latency)));
+        if (error != null) {
+            metrics.errors.computeIfAbsent(error, it -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void cache(String method, boolean hit) {
+        caches.computeIfAbsent(method, it -> new LongAdder[]{new LongAdder(), new LongAdder()})[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * Get the endpoints requested so far, such as "GET /api/record/{}/{}"
+     */
+    public Set<String> getEndpoints() {
+        return new TreeSet<>(endpoints.keySet());
+    }
+
+    public long getRequests(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.requests.sum();
+    }
+
+    /**
+     * Get the number of failed requests of an endpoint, by kind, such as {@link MetricsSink#TIMEOUT}
+     */
+    public Map<String, Long> getErrors(String endpoint) {
+        Map<String, Long> errors = new HashMap<>();
+        Endpoint metrics = endpoints.get(endpoint);
+        if (metrics != null) {
+            metrics.errors.forEach((error, count) -> errors.put(error, count.sum()));
+        }
+        return errors;
+    }
+
+    public long getBytesIn(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.bytesIn.sum();
+    }
+
+    public long getBytesOut(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.bytesOut.sum();
+    }
+
+    /**
+     * Get a copy of the latencies of an endpoint, in nanoseconds
+     *
+     * @return the histogram, empty if never requested
+     */
+    public Histogram getLatency(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? new Histogram(3) : metrics.latency.copy();
+    }
+
+    /**
+     * Get the share of the reads of a method served from the response cache
+     *
+     * @return the hit rate between 0 and 1, 0 if never read
+     */
+    public double getCacheHitRate(String method) {
+        LongAdder[] counts = caches.get(method);
+        if (counts == null) {
+            return 0;
+        }
+        long hits = counts[0].sum();
+        long total = hits + counts[1].sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Forget every metric
+     */
+    public void reset() {
+        endpoints.clear();
+        caches.clear();
+    }
+
+    private static class Endpoint {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(TimeUnit.MICROSECONDS.toNanos(1), MAX_LATENCY, 3);
+    }
+}
@@ -0,0 +1,503 @@
+package susteam.sdk;
+
+import io.vertx.core.http.HttpVersion;
+import io.vertx.ext.web.client.WebClientOptions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Options of the sdk, mainly of the connections to the server
+ *
+ * Requests share a pool of kept alive connections per server. With HTTP/1.1 every
+ * connection carries one request at a time, unless pipelining is enabled. With
+ * HTTP/2 every connection multiplexes many requests, negotiated by ALPN over TLS
+ * or by h2c in clear text, so the parallel calls made at game startup share a few
+ * warm connections.
+ *
+ * Setters return the options, so they can be chained.
+ */
+public class SdkOptions {
+
+    public static final String DEFAULT_HOST = "susteam.gogo.moe";
+    public static final int DEFAULT_PORT = 80;
+    public static final int DEFAULT_SSL_PORT = 443;
+    public static final int DEFAULT_MAX_POOL_SIZE = 8;
+    public static final int DEFAULT_HTTP2_MAX_POOL_SIZE = 1;
+    public static final int DEFAULT_HTTP2_MULTIPLEXING_LIMIT = -1;
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 60;
+    public static final int DEFAULT_PIPELINING_LIMIT = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final long DEFAULT_REQUEST_TIMEOUT = 10000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY = 200;
+    public static final long DEFAULT_MAX_RETRY_DELAY = 5000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_RESET_TIMEOUT = 30000;
+    public static final long DEFAULT_RECONCILE_INTERVAL = 30000;
+
+    private String host = DEFAULT_HOST;
+    private int port = -1;
+    private boolean ssl;
+    private boolean trustAll;
+    private HttpVersion protocolVersion = HttpVersion.HTTP_1_1;
+    private boolean http2ClearTextUpgrade = true;
+    private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private int http2MaxPoolSize = DEFAULT_HTTP2_MAX_POOL_SIZE;
+    private int http2MultiplexingLimit = DEFAULT_HTTP2_MULTIPLEXING_LIMIT;
+    private boolean keepAlive = true;
+    private int keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+    private boolean pipelining;
+    private int pipeliningLimit = DEFAULT_PIPELINING_LIMIT;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+    private int circuitBreakerThreshold = DEFAULT_CIRCUIT_BREAKER_THRESHOLD;
+    private long circuitBreakerResetTimeout = DEFAULT_CIRCUIT_BREAKER_RESET_TIMEOUT;
+    private boolean offlineMode = true;
+    private long reconcileInterval = DEFAULT_RECONCILE_INTERVAL;
+    private int inviteConcurrency = InviteQueue.DEFAULT_CONCURRENCY;
+    private double inviteRate = InviteQueue.DEFAULT_RATE;
+    private int inviteBurst = InviteQueue.DEFAULT_BURST;
+    private long userTtl = UserSession.DEFAULT_TTL;
+    private long responseCacheMaxBytes = ResponseCache.DEFAULT_MAX_BYTES;
+    private final Map<String, Long> responseCacheTtls = new HashMap<>();
+    private MetricsSink metricsSink;
+    private String traceHeader;
+
+    public SdkOptions() {
+        responseCacheTtls.put("getAllAchievement", TimeUnit.MINUTES.toMillis(1));
+        responseCacheTtls.put("achievement", TimeUnit.MINUTES.toMillis(1));
+        responseCacheTtls.put("getUserAchievementProcess", TimeUnit.SECONDS.toMillis(10));
+        responseCacheTtls.put("getUserMaxScore", TimeUnit.SECONDS.toMillis(10));
+        responseCacheTtls.put("checkBought", TimeUnit.MINUTES.toMillis(5));
+        responseCacheTtls.put("friends", TimeUnit.SECONDS.toMillis(30));
+        responseCacheTtls.put("gameFriends", TimeUnit.SECONDS.toMillis(30));
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @param host Host of the server
+     */
+    public SdkOptions setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    /**
+     * Get the port of the server, by default {@link #DEFAULT_SSL_PORT} with TLS and {@link #DEFAULT_PORT} without
+     */
+    public int getPort() {
+        if (port != -1) {
+            return port;
+        }
+        return ssl ? DEFAULT_SSL_PORT : DEFAULT_PORT;
+    }
+
+    /**
+     * @param port Port of the server
+     */
+    public SdkOptions setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public boolean isSsl() {
+        return ssl;
+    }
+
+    /**
+     * @param ssl Whether to connect with TLS, HTTP/2 is then negotiated by ALPN
+     */
+    public SdkOptions setSsl(boolean ssl) {
+        this.ssl = ssl;
+        return this;
+    }
+
+    public boolean isTrustAll() {
+        return trustAll;
+    }
+
+    /**
+     * @param trustAll Whether to trust any server certificate, only meant for testing
+     */
+    public SdkOptions setTrustAll(boolean trustAll) {
+        this.trustAll = trustAll;
+        return this;
+    }
+
+    public HttpVersion getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * @param protocolVersion Version of HTTP used to talk to the server
+     */
+    public SdkOptions setProtocolVersion(HttpVersion protocolVersion) {
+        this.protocolVersion = protocolVersion;
+        return this;
+    }
+
+    public boolean isHttp2ClearTextUpgrade() {
+        return http2ClearTextUpgrade;
+    }
+
+    /**
+     * @param http2ClearTextUpgrade Whether h2c starts by an upgrade from HTTP/1.1,
+     *                              instead of assuming the server speaks HTTP/2
+     */
+    public SdkOptions setHttp2ClearTextUpgrade(boolean http2ClearTextUpgrade) {
+        this.http2ClearTextUpgrade = http2ClearTextUpgrade;
+        return this;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize Max number of HTTP/1.1 connections to the server
+     */
+    public SdkOptions setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+        return this;
+    }
+
+    public int getHttp2MaxPoolSize() {
+        return http2MaxPoolSize;
+    }
+
+    /**
+     * @param http2MaxPoolSize Max number of HTTP/2 connections to the server
+     */
+    public SdkOptions setHttp2MaxPoolSize(int http2MaxPoolSize) {
+        this.http2MaxPoolSize = http2MaxPoolSize;
+        return this;
+    }
+
+    public int getHttp2MultiplexingLimit() {
+        return http2MultiplexingLimit;
+    }
+
+    /**
+     * @param http2MultiplexingLimit Max number of concurrent requests on an HTTP/2
+     *                               connection, -1 for the limit set by the server
+     */
+    public SdkOptions setHttp2MultiplexingLimit(int http2MultiplexingLimit) {
+        this.http2MultiplexingLimit = http2MultiplexingLimit;
+        return this;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @param keepAlive Whether connections are reused between requests
+     */
+    public SdkOptions setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * @param keepAliveTimeout Seconds an idle connection is kept
+     */
+    public SdkOptions setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+        return this;
+    }
+
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    /**
+     * @param pipelining Whether HTTP/1.1 requests are pipelined on a connection
+     */
+    public SdkOptions setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+        return this;
+    }
+
+    public int getPipeliningLimit() {
+        return pipeliningLimit;
+    }
+
+    /**
+     * @param pipeliningLimit Max number of requests pipelined on a connection
+     */
+    public SdkOptions setPipeliningLimit(int pipeliningLimit) {
+        this.pipeliningLimit = pipeliningLimit;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout Milliseconds to wait for a connection to the server
+     */
+    public SdkOptions setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param requestTimeout Milliseconds a request waits for data of the response
+     *                       before failing, 0 to wait forever. It is an idle timeout,
+     *                       so a long save upload or download is only failed if it
+     *                       stalls.
+     */
+    public SdkOptions setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries Max number of times a call failing on the way to the server is retried
+     */
+    public SdkOptions setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * @param retryDelay Milliseconds of the first backoff, doubled on every retry
+     */
+    public SdkOptions setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    public long getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * @param maxRetryDelay Max milliseconds of a backoff
+     */
+    public SdkOptions setMaxRetryDelay(long maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+        return this;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * @param circuitBreakerThreshold Number of consecutive failures on the way to the
+     *                                server after which calls fail at once
+     */
+    public SdkOptions setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        return this;
+    }
+
+    public long getCircuitBreakerResetTimeout() {
+        return circuitBreakerResetTimeout;
+    }
+
+    /**
+     * @param circuitBreakerResetTimeout Milliseconds calls fail at once before the
+     *                                   server is checked again
+     */
+    public SdkOptions setCircuitBreakerResetTimeout(long circuitBreakerResetTimeout) {
+        this.circuitBreakerResetTimeout = circuitBreakerResetTimeout;
+        return this;
+    }
+
+    public boolean isOfflineMode() {
+        return offlineMode;
+    }
+
+    /**
+     * @param offlineMode Whether reads are served from the local store and writes are
+     *                    journaled while the server is unreachable
+     */
+    public SdkOptions setOfflineMode(boolean offlineMode) {
+        this.offlineMode = offlineMode;
+        return this;
+    }
+
+    public long getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+    /**
+     * @param reconcileInterval Milliseconds between checks whether the server is back,
+     *                          while writes made offline are not replayed
+     */
+    public SdkOptions setReconcileInterval(long reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+        return this;
+    }
+
+    public int getInviteConcurrency() {
+        return inviteConcurrency;
+    }
+
+    /**
+     * @param inviteConcurrency Max number of invites in flight
+     */
+    public SdkOptions setInviteConcurrency(int inviteConcurrency) {
+        this.inviteConcurrency = inviteConcurrency;
+        return this;
+    }
+
+    public double getInviteRate() {
+        return inviteRate;
+    }
+
+    /**
+     * @param inviteRate Invites sent per second once the burst is used, more than 0
+     */
+    public SdkOptions setInviteRate(double inviteRate) {
+        this.inviteRate = inviteRate;
+        return this;
+    }
+
+    public int getInviteBurst() {
+        return inviteBurst;
+    }
+
+    /**
+     * @param inviteBurst Invites sent at once after being idle
+     */
+    public SdkOptions setInviteBurst(int inviteBurst) {
+        this.inviteBurst = inviteBurst;
+        return this;
+    }
+
+    public long getUserTtl() {
+        return userTtl;
+    }
+
+    /**
+     * @param userTtl Milliseconds the user resolved from the token is reused before fetched again
+     */
+    public SdkOptions setUserTtl(long userTtl) {
+        this.userTtl = userTtl;
+        return this;
+    }
+
+    public long getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    /**
+     * @param responseCacheMaxBytes Max estimated size of the results kept by the response cache
+     */
+    public SdkOptions setResponseCacheMaxBytes(long responseCacheMaxBytes) {
+        this.responseCacheMaxBytes = responseCacheMaxBytes;
+        return this;
+    }
+
+    public Map<String, Long> getResponseCacheTtls() {
+        return Collections.unmodifiableMap(responseCacheTtls);
+    }
+
+    /**
+     * Set how long the results of a read are cached
+     *
+     * Cached reads are getAllAchievement, achievement, getUserAchievementProcess,
+     * getUserMaxScore, checkBought, friends and gameFriends.
+     *
+     * @param method Name of the read method
+     *
+     * @param ttl Milliseconds its results are cached, 0 to not cache them
+     */
+    public SdkOptions setResponseCacheTtl(String method, long ttl) {
+        responseCacheTtls.put(method, ttl);
+        return this;
+    }
+
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * @param metricsSink Receiver of the latency, bytes and errors of every request and
+     *                    of the hits of the response cache, null to measure nothing
+     */
+    public SdkOptions setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+        return this;
+    }
+
+    public String getTraceHeader() {
+        return traceHeader;
+    }
+
+    /**
+     * @param traceHeader Header sending a random trace id with every request, such as
+     *                    "X-Request-Id", null to send none
+     */
+    public SdkOptions setTraceHeader(String traceHeader) {
+        this.traceHeader = traceHeader;
+        return this;
+    }
+
+    /**
+     * Get the number of requests the connections of the pool carry at once
+     */
+    int concurrency() {
+        if (protocolVersion == HttpVersion.HTTP_2) {
+            return http2MaxPoolSize * (http2MultiplexingLimit > 0 ? http2MultiplexingLimit : 100);
+        }
+        return maxPoolSize * (pipelining ? pipeliningLimit : 1);
+    }
+
+    /**
+     * Create the options of the web client
+     */
+    WebClientOptions toWebClientOptions() {
+        WebClientOptions options = new WebClientOptions()
+                .setDefaultHost(host)
+                .setDefaultPort(getPort())
+                .setSsl(ssl)
+                .setTrustAll(trustAll)
+                .setProtocolVersion(protocolVersion)
+                .setMaxPoolSize(maxPoolSize)
+                .setHttp2MaxPoolSize(http2MaxPoolSize)
+                .setHttp2MultiplexingLimit(http2MultiplexingLimit)
+                .setHttp2ClearTextUpgrade(http2ClearTextUpgrade)
+                .setKeepAlive(keepAlive)
+                .setKeepAliveTimeout(keepAliveTimeout)
+                .setPipelining(pipelining)
+                .setPipeliningLimit(pipeliningLimit)
+                .setConnectTimeout(connectTimeout);
+        if (protocolVersion == HttpVersion.HTTP_2 && ssl) {
+            options.setUseAlpn(true)
+                    .setAlpnVersions(Arrays.asList(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1));
+        }
+        return options;
+    }
+}
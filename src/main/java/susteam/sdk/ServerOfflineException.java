@@ -0,0 +1,15 @@
+package susteam.sdk;
+
+
+/**
+ * Failure of a call not sent because the circuit is open, the server being down
+ *
+ * It is not an answer of the server, so reads are served and writes journaled
+ * offline as for any failure on the way to the server.
+ */
+class ServerOfflineException extends RuntimeException {
+
+    ServerOfflineException() {
+        super(CircuitBreaker.SERVER_OFFLINE, null, false, false);
+    }
+}
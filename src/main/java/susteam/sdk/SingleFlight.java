@@ -0,0 +1,66 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+/**
+ * Sharing of identical reads in flight
+ *
+ * A call made while an identical one is still in flight gets the future of that
+ * one instead of sending a new request. Only idempotent reads should go through
+ * it, keyed by method and arguments.
+ */
+class SingleFlight {
+
+    private final Map<String, Future<?>> flights = new HashMap<>();
+
+    private long calls;
+    private long shared;
+
+    /**
+     * Get the future of the call in flight for key, or make the call
+     *
+     * @param key Method and arguments of the call
+     *
+     * @param call Sends the request
+     *
+     * @return the future
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> Future<T> run(String key, Supplier<Future<T>> call) {
+        calls++;
+        Future<T> flying = (Future<T>) flights.get(key);
+        if (flying != null) {
+            shared++;
+            return flying;
+        }
+        Future<T> future = call.get();
+        if (!future.isComplete()) {
+            flights.put(key, future);
+            future.onComplete(it -> land(key, future));
+        }
+        return future;
+    }
+
+    /**
+     * Get the number of calls
+     */
+    synchronized long calls() {
+        return calls;
+    }
+
+    /**
+     * Get the number of calls given the future of another call, so not sent
+     */
+    synchronized long shared() {
+        return shared;
+    }
+
+    private synchronized void land(String key, Future<?> future) {
+        flights.remove(key, future);
+    }
+}
@@ -0,0 +1,135 @@
+package susteam.sdk;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.ext.web.client.impl.WebClientInternal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Client of the server shared by many sessions
+ *
+ * A client owns one event loop and one pool of connections, and every session
+ * created by it sends its requests through them, so one process can drive
+ * thousands of sessions on a few threads. Asking twice for the session of the
+ * same token and game key gives the same open session.
+ */
+public class SusteamClient {
+
+    private final Vertx vertx;
+    private final boolean ownsVertx;
+    private final HttpClient httpClient;
+    private final WebClient client;
+    private final SdkOptions options;
+    private final Map<String, SusteamSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Create a client with default options
+     */
+    public SusteamClient() {
+        this(new SdkOptions());
+    }
+
+    /**
+     * Create a client running on its own vertx
+     *
+     * @param options Options of the client
+     */
+    public SusteamClient(SdkOptions options) {
+        this(Vertx.vertx(), true, options);
+    }
+
+    /**
+     * Create a client running on the given vertx, which is left open on close
+     *
+     * @param vertx The vertx to run on
+     *
+     * @param options Options of the client
+     */
+    public SusteamClient(Vertx vertx, SdkOptions options) {
+        this(vertx, false, options);
+    }
+
+    private SusteamClient(Vertx vertx, boolean ownsVertx, SdkOptions options) {
+        this.vertx = vertx;
+        this.ownsVertx = ownsVertx;
+        WebClientOptions clientOptions = options.toWebClientOptions();
+        this.httpClient = vertx.createHttpClient(clientOptions);
+        this.client = WebClient.wrap(httpClient, clientOptions);
+        if (options.getMetricsSink() != null || options.getTraceHeader() != null) {
+            // interceptors are an internal API of the web client, vertx is pinned in build.gradle for it
+            ((WebClientInternal) client).addInterceptor(new RequestMetrics(options.getMetricsSink(), options.getTraceHeader()));
+        }
+        this.options = options;
+    }
+
+    /**
+     * Get the session of a user in a game, creating it if not open
+     *
+     * @param token User token
+     *
+     * @param gameKey Key of the game, provided when creating a game
+     *
+     * @return the session
+     */
+    public SusteamSession session(String token, String gameKey) {
+        return sessions.computeIfAbsent(key(token, gameKey),
+                it -> new SusteamSession(this, token, gameKey, options));
+    }
+
+    /**
+     * Close every open session, then the connections and the vertx if owned
+     *
+     * @return the future, completed once queued updates of every session are sent or journaled
+     */
+    public Future<Void> close() {
+        @SuppressWarnings("rawtypes")
+        List<Future> closing = new ArrayList<>();
+        for (SusteamSession session : new ArrayList<>(sessions.values())) {
+            closing.add(session.close());
+        }
+        Promise<Void> promise = Promise.promise();
+        CompositeFuture.join(closing).onComplete(it -> {
+            client.close();
+            if (ownsVertx) {
+                vertx.close(promise);
+            } else {
+                promise.complete();
+            }
+        });
+        return promise.future();
+    }
+
+    Vertx vertx() {
+        return vertx;
+    }
+
+    WebClient webClient() {
+        return client;
+    }
+
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    SdkOptions options() {
+        return options;
+    }
+
+    void closed(SusteamSession session) {
+        sessions.remove(key(session.getToken(), session.getGameKey()), session);
+    }
+
+    private static String key(String token, String gameKey) {
+        return token + "\n" + gameKey;
+    }
+}
@@ -1,32 +1,26 @@
 package susteam.sdk;
 
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
-import io.vertx.core.Promise;
-import io.vertx.core.Vertx;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.HttpRequest;
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
-import io.vertx.ext.web.multipart.MultipartForm;
 
 import java.io.File;
-import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
 
 
+/**
+ * Static facade over one session of one client
+ *
+ * Every method calls the session created by the last {@link #init(String, String)}.
+ * Processes serving many users or games should use {@link SusteamClient} instead.
+ */
 public class SusteamSdk {
 
-    private static final String SERVER_HOST = "susteam.gogo.moe";
-
-    private static Vertx vertx;
-    private static WebClient client;
-    private static String token;
-    private static String gameKey;
+    private static SusteamClient client;
+    private static SusteamSession session;
 
     /**
      * Init sdk
@@ -36,37 +30,154 @@ public class SusteamSdk {
      * @param gameKey Key of the game, provided when creating a game
      */
     public static void init(String token, String gameKey) {
-        vertx = Vertx.vertx();
-        client = WebClient.create(
-                vertx,
-                new WebClientOptions().setDefaultHost(SERVER_HOST)
-        );
-        SusteamSdk.token = token;
-        SusteamSdk.gameKey = gameKey;
+        init(token, gameKey, UserSession.DEFAULT_TTL);
+    }
+
+    /**
+     * Init sdk with a custom lifetime of the cached user identity
+     *
+     * @param token User token
+     *
+     * @param gameKey Key of the game, provided when creating a game
+     *
+     * @param userTtl Milliseconds the user resolved from the token is reused before fetched again
+     */
+    public static void init(String token, String gameKey, long userTtl) {
+        init(token, gameKey, new SdkOptions().setUserTtl(userTtl));
+    }
+
+    /**
+     * Init sdk with custom options, such as the connection pool and HTTP version
+     *
+     * The client of a previous init is closed.
+     *
+     * @param token User token
+     *
+     * @param gameKey Key of the game, provided when creating a game
+     *
+     * @param options Options of the sdk
+     */
+    public static synchronized void init(String token, String gameKey, SdkOptions options) {
+        if (client != null) {
+            client.close();
+        }
+        client = new SusteamClient(options);
+        session = client.session(token, gameKey);
+    }
+
+    /**
+     * Send everything still queued and release the sdk
+     *
+     * @return the future, completed once queued updates are sent or journaled and the sdk is closed
+     */
+    public static synchronized Future<Void> close() {
+        SusteamClient closing = client;
+        client = null;
+        session = null;
+        return closing == null ? Future.succeededFuture() : closing.close();
+    }
+
+    /**
+     * Get the number of calls to reads shared while in flight
+     *
+     * @return the number of calls
+     */
+    public static long getSharedReadCalls() {
+        return session.getSharedReadCalls();
+    }
+
+    /**
+     * Get the number of calls to reads answered by an identical call in flight,
+     * so without sending a request
+     *
+     * @return the number of requests saved
+     */
+    public static long getSharedReadsSaved() {
+        return session.getSharedReadsSaved();
+    }
+
+    /**
+     * Get the number of reads answered by the response cache
+     *
+     * @return the number of hits
+     */
+    public static long getResponseCacheHits() {
+        return session.getResponseCacheHits();
+    }
+
+    /**
+     * Get the number of cached reads sent to the server, because not cached or expired
+     *
+     * @return the number of misses
+     */
+    public static long getResponseCacheMisses() {
+        return session.getResponseCacheMisses();
+    }
+
+    /**
+     * Get the number of results evicted from the response cache to stay within its size
+     *
+     * @return the number of evictions
+     */
+    public static long getResponseCacheEvictions() {
+        return session.getResponseCacheEvictions();
+    }
+
+    /**
+     * Drop every cached result, so the next reads are sent to the server
+     */
+    public static void clearResponseCache() {
+        session.clearResponseCache();
+    }
+
+    /**
+     * Set the codec compressing uploaded saves, or null to upload them uncompressed
+     *
+     * Saves are decompressed on load according to their header whatever the
+     * codec is, so uncompressed saves always load.
+     *
+     * @param codec The codec, see {@link SaveCodecs}
+     */
+    public static void setSaveCodec(SaveCodec codec) {
+        session.setSaveCodec(codec);
+    }
+
+    /**
+     * Fetch everything a game needs at launch, in as few round trips as possible
+     *
+     * The snapshot is fetched by one request when the server offers a bootstrap
+     * endpoint. Otherwise the user and the game are fetched first, together, then
+     * the achievements, the processes of the user, the max score, the saves and the
+     * friends in game are all fetched in parallel. Results are cached as if read
+     * one by one, so following reads are served locally.
+     *
+     * The max score is null if the user has no record.
+     *
+     * @return the future of the snapshot
+     */
+    public static Future<SessionSnapshot> bootstrap() {
+        return session.bootstrap();
     }
 
     /**
      * Get Game Future (including fields: gameId, name, author,
      * publishTime, introduction and description) according to the game key
      *
+     * The game is fetched once and then cached, concurrent callers share the same request.
+     *
      * @return the future
      */
     public static Future<Game> getGame() {
-        Promise<Game> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/gameKey/" + SusteamSdk.gameKey);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            if (result.result().bodyAsJsonObject().getBoolean("success")) {
-                Game game = GameKt.toGame(result.result().bodyAsJsonObject().getJsonObject("game"));
-                promise.complete(game);
-            } else {
-                promise.fail(result.result().bodyAsJsonObject().getString("error"));
-            }
-        });
-        return promise.future();
+        return session.getGame();
+    }
+
+    /**
+     * Drop the cached game and fetch it again
+     *
+     * @return the future
+     */
+    public static Future<Game> refreshGame() {
+        return session.refreshGame();
     }
 
     /**
@@ -77,21 +188,7 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Void> isServerOnline() {
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (token != null) {
-                promise.complete();
-            } else {
-                promise.fail("json format invalid");
-            }
-        });
-        return promise.future();
+        return session.isServerOnline();
     }
 
     /**
@@ -101,23 +198,7 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<User> user() {
-        Promise<User> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            promise.complete(user);
-        });
-        return promise.future();
+        return session.user();
     }
 
     /**
@@ -126,47 +207,16 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<GameSave[]> getAllGameSaveName() {
-        Promise<GameSave[]> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-
-            client.get("/api/save/" + username + "/" + SusteamSdk.gameKey)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                JsonArray saves = res.result().bodyAsJsonObject().getJsonArray("gameSaves");
-                                GameSave[] gameSaves = new GameSave[saves.size()];
-                                for (int i = 0; i < saves.size(); i++) {
-                                    gameSaves[i] = new GameSave(
-                                            saves.getJsonObject(i).getString("username"),
-                                            saves.getJsonObject(i).getInteger("gameId"),
-                                            saves.getJsonObject(i).getString("saveName"),
-                                            saves.getJsonObject(i).getInstant("savedTime")
-                                    );
-                                }
-                                promise.complete(gameSaves);
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.getAllGameSaveName();
+    }
+
+    /**
+     * Stream all game saves of current user in game, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public static JsonArrayStream<GameSave> streamGameSaves() {
+        return session.streamGameSaves();
     }
 
     /**
@@ -179,147 +229,88 @@ public class SusteamSdk {
      * @return A void future
      */
     public static Future<Void> deleteSave(String fileName) {
-        Promise<Void> promise = Promise.promise();
-            HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-            request.send(result -> {
-                if (result.failed()) {
-                    promise.fail(result.cause());
-                    return;
-                }
-                Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-                if (!token) {
-                    promise.fail("token invalid");
-                    return;
-                }
-                User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-                String username = user.getUsername();
-
-                client.get("/api/save/" + username + "/" + SusteamSdk.gameKey + "/" + fileName + "/delete")
-                        .bearerTokenAuthentication(SusteamSdk.token)
-                        .send(res -> {
-                            if (res.succeeded()) {
-                                if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                    promise.complete();
-                                } else {
-                                    promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                                }
-                            } else {
-                                promise.fail(res.cause());
-                            }
-
-                        });
-            });
-        return promise.future();
+        return session.deleteSave(fileName);
     }
 
     /**
      * Save a file and return a void future. The file should first be saved in local dir, then pass the file to server.
      *
-     * Save successfully if the future is succeeded.
+     * Save successfully if the future is succeeded. The file is streamed from disk
+     * as a chunked application/octet-stream body, so it is never held in memory.
+     * If a codec is set by {@link #setSaveCodec(SaveCodec)}, it is compressed
+     * into a temporary file first.
      *
      * @param file File need to be saved
      *
      * @return A void future
      */
     public static Future<Void> save(File file) {
+        return session.save(file);
+    }
+
+    /**
+     * Save content in memory as a game save and return a void future.
+     *
+     * Save successfully if the future is succeeded.
+     *
+     * @param saveName The file name of the game save
+     *
+     * @param data Content of the game save
+     *
+     * @return A void future
+     */
+    public static Future<Void> save(String saveName, Buffer data) {
+        return session.save(saveName, data);
+    }
+
+    /**
+     * Save content in memory as a game save and return a void future.
+     *
+     * Save successfully if the future is succeeded. The remaining bytes of the
+     * buffer are sent without being copied.
+     *
+     * @param saveName The file name of the game save
+     *
+     * @param data Content of the game save
+     *
+     * @return A void future
+     */
+    public static Future<Void> save(String saveName, ByteBuffer data) {
+        return session.save(saveName, data);
+    }
+
+    /**
+     * Save a file by uploading only what changed since it was last synced and return a void future.
+     *
+     * Sync successfully if the future is succeeded. Nothing is uploaded if the file
+     * is unchanged, and the whole file is uploaded if the server has no chunked saves.
+     *
+     * @param file File need to be saved
+     *
+     * @return A void future
+     */
+    public static Future<Void> sync(File file) {
+        return session.sync(file);
+    }
 
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-            final MultipartForm form = MultipartForm.create();
-            try {
-                form.textFileUpload("txt-file", file.getName(), file.getAbsolutePath(), "text/plain");
-            } catch (Exception e) {
-                promise.fail("file open fail");
-                return;
-            }
-            client
-                    .post("/api/save/" + username + "/" + SusteamSdk.gameKey + "/" + file.getName())
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .sendMultipartForm(form, res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                promise.complete();
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-                    });
-        });
-        return promise.future();
-    }
-
-    /**
-     * Load a file and return a void future
-     *
-     * Load successfully if the future is succeeded.
+    /**
+     * Load a file and return a future of the local file
+     *
+     * Load successfully if the future is succeeded. The save is streamed to a
+     * temporary file next to the target and moved over it once fully received,
+     * so it is never held in memory and a failed download keeps the old file.
+     * Compressed saves are decompressed on the way.
+     *
+     * Loaded saves are cached per game and user. A cached save is only downloaded
+     * again if the server reports it changed, by a conditional request when the
+     * server sent an ETag or Last-Modified, or else by its savedTime.
      *
      * @param fileName The file name need to load from server
      *
      * @return the future
      */
     public static Future<File> load(String fileName) {
-
-        Promise<File> promise = Promise.promise();
-
-        SusteamSdk.getGame().onComplete(it -> {
-            if (it.failed()) {
-                promise.fail(it.cause());
-                return;
-            }
-            Game game = it.result();
-            HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-            request.send(result -> {
-                if (result.failed()) {
-                    promise.fail(result.cause());
-                    return;
-                }
-                Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-                if (!token) {
-                    promise.fail("token invalid");
-                    return;
-                }
-
-                User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-                String username = user.getUsername();
-                HttpRequest<Buffer> loadRequest =
-                        client.get("/api/save/" + username + "/" + SusteamSdk.gameKey + "/" + fileName)
-                                .bearerTokenAuthentication(SusteamSdk.token);
-
-                loadRequest.send(res -> {
-                    if (res.failed()) {
-                        promise.fail(res.cause());
-                        return;
-                    }
-                    File dir = new File(System.getProperty("java.io.tmpdir") + "susteam/sdk/" + game.getId());
-                    dir.mkdirs();
-                    File file = new File(dir + "/" + fileName);
-
-                    try {
-                        file.createNewFile();
-                        Files.write(file.toPath(), res.result().bodyAsBuffer().getBytes(), StandardOpenOption.WRITE);
-                        promise.complete();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        promise.fail("file error");
-                    }
-                });
-            });
-        });
-        return promise.future();
+        return session.load(fileName);
     }
 
     /**
@@ -335,43 +326,45 @@ public class SusteamSdk {
      *
      */
     public static Future<Void> updateUserAchievementProcess(String achievementName, int rateOfProcess) {
+        return session.updateUserAchievementProcess(achievementName, rateOfProcess);
+    }
+
+    /**
+     * Queue the process of an achievement, to be sent with other queued processes
+     *
+     * Queued processes of the same achievement are coalesced, so only one update per
+     * achievement is sent per flush whatever the number of calls.
+     *
+     * @param achievementName The achievement name
+     *
+     * @param rateOfProcess User current process
+     *
+     * @return the future of the flush sending it
+     */
+    public static Future<Void> queueUserAchievementProcess(String achievementName, int rateOfProcess) {
+        return session.queueUserAchievementProcess(achievementName, rateOfProcess);
+    }
+
+    /**
+     * Send all queued achievement processes now
+     *
+     * @return the future, failed if any update failed
+     */
+    public static Future<Void> flushUserAchievementProcess() {
+        return session.flushUserAchievementProcess();
+    }
 
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.put("username", username);
-            jsonObject.put("achievementName", achievementName);
-            jsonObject.put("rateOfProcess", rateOfProcess);
-
-            client
-                    .post("/api/achieveProcess/" + gameKey)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .sendJson(jsonObject, res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                promise.complete();
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-                    });
-        });
-        return promise.future();
+    /**
+     * Configure how queued achievement processes are sent, flushing those already queued
+     *
+     * @param flushInterval Milliseconds a queued process waits at most before being sent
+     *
+     * @param flushSize Number of distinct queued achievements triggering a flush
+     *
+     * @param keepMax Whether to send the max queued process of an achievement instead of the latest
+     */
+    public static void setAchievementBatching(long flushInterval, int flushSize, boolean keepMax) {
+        session.setAchievementBatching(flushInterval, flushSize, keepMax);
     }
 
     /**
@@ -388,41 +381,7 @@ public class SusteamSdk {
      * @return Void
      */
     public static Future<Void> addAchievement(String achievementName, String description, int achievementCount) {
-
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.put("achievementName", achievementName);
-            jsonObject.put("description", description);
-            jsonObject.put("achievementCount", achievementCount);
-
-            client
-                    .post("/api/achievement/" + SusteamSdk.gameKey)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .sendJson(jsonObject, res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                promise.complete();
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-                    });
-        });
-        return promise.future();
+        return session.addAchievement(achievementName, description, achievementCount);
     }
 
     /**
@@ -431,46 +390,16 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Achievement[]> getAllAchievement() {
-        Promise<Achievement[]> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            client.get("/api/achievement/" + SusteamSdk.gameKey)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                JsonArray achievements = res.result().bodyAsJsonObject().getJsonArray("achievements");
-                                Achievement[] gameAchievements = new Achievement[achievements.size()];
-                                for (int i = 0; i < achievements.size(); i++) {
-                                    gameAchievements[i] = new Achievement(
-                                            achievements.getJsonObject(i).getInteger("gameId"),
-                                            achievements.getJsonObject(i).getInteger("achievementId"),
-                                            achievements.getJsonObject(i).getString("achievementName"),
-                                            achievements.getJsonObject(i).getString("description"),
-                                            achievements.getJsonObject(i).getInteger("achieveCount")
-                                    );
-                                }
-                                promise.complete(gameAchievements);
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.getAllAchievement();
+    }
+
+    /**
+     * Stream all achievements of current user in game, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public static JsonArrayStream<Achievement> streamAchievements() {
+        return session.streamAchievements();
     }
 
     /**
@@ -481,43 +410,7 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Achievement> achievement(String achievementName) {
-        Promise<Achievement> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            client.get("/api/achievement/" + SusteamSdk.gameKey + "/" + URLEncoder.encode(achievementName, StandardCharsets.UTF_8))
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                JsonObject achievements = res.result().bodyAsJsonObject().getJsonObject("achievement");
-                                Achievement gameAchievement = new Achievement(
-                                        achievements.getInteger("gameId"),
-                                        achievements.getInteger("achievementId"),
-                                        achievements.getString("achievementName"),
-                                        achievements.getString("description"),
-                                        achievements.getInteger("achieveCount")
-                                );
-                                promise.complete(gameAchievement);
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.achievement(achievementName);
     }
 
     /**
@@ -528,94 +421,90 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Integer> getUserAchievementProcess(String achievementName) {
-        Promise<Integer> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-
-            client.get("/api/achieveProcess/" + username + "/" + SusteamSdk.gameKey + "/" + URLEncoder.encode(achievementName, StandardCharsets.UTF_8))
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                promise.complete(res.result().bodyAsJsonObject().getJsonObject("userAchievementProcess").getInteger("rateOfProcess"));
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.getUserAchievementProcess(achievementName);
+    }
+
+    /**
+     * Get the engine tracking the progress of achievements locally, loading it once
+     *
+     * The engine starts from the achievements of the game and the processes of the
+     * user, then takes progress events, detects unlocks and sends the grown
+     * progress to the server by itself, see {@link AchievementEngine}. It fails to
+     * load rather than start an achievement whose process could not be fetched at 0.
+     *
+     * @return the future
+     */
+    public static Future<AchievementEngine> getAchievementEngine() {
+        return session.getAchievementEngine();
+    }
+
+    /**
+     * Get the processes of current user of all achievements in the game, by achievement name
+     *
+     * They are fetched by one request when the server offers it, or else by one
+     * request per achievement, as many in flight as the connections carry at once.
+     * Achievements the user has no process of are left out, any other error
+     * answered for an achievement fails the future. The processes are cached for
+     * {@link #getUserAchievementProcess(String)}.
+     *
+     * @return the future
+     */
+    public static Future<Map<String, UserAchievementProcess>> getAllUserAchievementProcesses() {
+        return session.getAllUserAchievementProcesses();
     }
 
     /**
      * Get Record Array Future representing the records whose score are
      * in rank of the game
      *
+     * The rank is cached, and a smaller rank is served from a larger cached one.
+     * It is fetched again after the cache ttl or after a record is added.
+     *
      * @param rankNum Number of records
      *
      * @return the future
      */
     public static Future<Record[]> getRank(int rankNum) {
-        Promise<Record[]> promise = Promise.promise();
-
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-
-            client.get("/api/record/" + SusteamSdk.gameKey + "/" + rankNum)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                JsonArray records = res.result().bodyAsJsonObject().getJsonArray("records");
-                                Record[] gameRecords = new Record[records.size()];
-                                for (int i = 0; i < records.size(); i++) {
-                                    gameRecords[i] = new Record(
-                                            records.getJsonObject(i).getInteger("recordId"),
-                                            records.getJsonObject(i).getInteger("gameId"),
-                                            records.getJsonObject(i).getString("username"),
-                                            records.getJsonObject(i).getInteger("score")
-                                    );
-                                }
-                                promise.complete(gameRecords);
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.getRank(rankNum);
+    }
+
+    /**
+     * Subscribe to the records in rank of the game
+     *
+     * The handler gets the records once fetched, then again whenever they change.
+     * The rank is refreshed periodically while there are subscribers.
+     *
+     * @param rankNum Number of records
+     *
+     * @param handler Handler of the records
+     *
+     * @return the future, succeeded once the handler got the records
+     */
+    public static Future<Void> subscribeRank(int rankNum, Handler<Record[]> handler) {
+        return session.subscribeRank(rankNum, handler);
+    }
+
+    /**
+     * Unsubscribe from the records in rank of the game
+     *
+     * @param handler Handler given to {@link #subscribeRank(int, Handler)}
+     */
+    public static void unsubscribeRank(Handler<Record[]> handler) {
+        session.unsubscribeRank(handler);
     }
 
+    /**
+     * Stream the records whose score are in rank of the game, decoded while the response arrives
+     *
+     * The records are always fetched from the server, bypassing the cached rank.
+     *
+     * @param rankNum Number of records
+     *
+     * @return the stream
+     */
+    public static JsonArrayStream<Record> streamRank(int rankNum) {
+        return session.streamRank(rankNum);
+    }
 
     /**
      * Get Integer Future representing the max score of current user in the game
@@ -623,46 +512,7 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Integer> getUserMaxScore() {
-        Promise<Integer> promise = Promise.promise();
-
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-
-            client.get("/api/record/max/" + SusteamSdk.gameKey + "/" + username)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .send(res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                JsonObject jsonObject = res.result().bodyAsJsonObject().getJsonObject("record");
-                                Record record = new Record(
-                                            jsonObject.getInteger("recordId"),
-                                            jsonObject.getInteger("gameId"),
-                                            jsonObject.getString("username"),
-                                            jsonObject.getInteger("score")
-                                    );
-                                promise.complete(record.getScore());
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                       promise.fail(res.cause());
-                        }
-
-                    });
-        });
-        return promise.future();
+        return session.getUserMaxScore();
     }
 
     /**
@@ -675,45 +525,23 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Void> addRecord(int score) {
-
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/token").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            Boolean token = result.result().bodyAsJsonObject().getBoolean("token");
-            if (!token) {
-                promise.fail("token invalid");
-                return;
-            }
-
-            User user = UserKt.toUser(result.result().bodyAsJsonObject().getJsonObject("userRole"));
-            String username = user.getUsername();
-
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.put("username", username);
-            jsonObject.put("score", score);
-
-            client
-                    .post("/api/record/" + gameKey)
-                    .bearerTokenAuthentication(SusteamSdk.token)
-                    .sendJson(jsonObject, res -> {
-                        if (res.succeeded()) {
-                            if (res.result().bodyAsJsonObject().getBoolean("success")) {
-                                promise.complete();
-                            } else {
-                                promise.fail(res.result().bodyAsJsonObject().getString("error"));
-                            }
-                        } else {
-                            promise.fail(res.cause());
-                        }
-                    });
-        });
-        return promise.future();
+        return session.addRecord(score);
     }
 
+    /**
+     * Submit a score record without waiting for the server.
+     *
+     * The score is written to a local journal and uploaded in the background, in
+     * submission order. Scores that cannot be uploaded yet, because the server is
+     * unreachable or the process exits, are uploaded again after the next init.
+     *
+     * @param score The record need to upload
+     *
+     * @return the future, completed once the score is journaled
+     */
+    public static Future<Void> submitRecord(int score) {
+        return session.submitRecord(score);
+    }
 
     /**
      * Get Friend Array Future representing all friends of current user
@@ -721,30 +549,16 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Friend[]> friends() {
-        Promise<Friend[]> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/friend").bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-
-            if (result.result().bodyAsJsonObject().getBoolean("success")) {
-                JsonArray jsonObjectFriends = result.result().bodyAsJsonObject().getJsonArray("friends");
-                Friend[] friends = new Friend[jsonObjectFriends.size()];
-                for (int i = 0; i < jsonObjectFriends.size(); i++) {
-                    friends[i] = new Friend(
-                            jsonObjectFriends.getJsonObject(i).getString("username"),
-                            jsonObjectFriends.getJsonObject(i).getBoolean("online"),
-                            jsonObjectFriends.getJsonObject(i).getInstant("lastSeen")
-                    );
-                }
-                promise.complete(friends);
-            } else {
-                promise.fail(result.result().bodyAsJsonObject().getString("error"));
-            }
-        });
-        return promise.future();
+        return session.friends();
+    }
+
+    /**
+     * Stream all friends of current user, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public static JsonArrayStream<Friend> streamFriends() {
+        return session.streamFriends();
     }
 
     /**
@@ -754,37 +568,58 @@ public class SusteamSdk {
      * @return the future
      */
     public static Future<Friend[]> gameFriends() {
-        Promise<Friend[]> promise = Promise.promise();
-        SusteamSdk.getGame().onComplete(it -> {
-            if (it.failed()) {
-                promise.fail(it.cause());
-                return;
-            }
-            Game game = it.result();
-            HttpRequest<Buffer> request = client.get("/api/friend/" + game.getId()).bearerTokenAuthentication(token);
-            request.send(result -> {
-                if (result.failed()) {
-                    promise.fail(result.cause());
-                    return;
-                }
-
-                if (result.result().bodyAsJsonObject().getBoolean("success")) {
-                    JsonArray jsonObjectFriends = result.result().bodyAsJsonObject().getJsonArray("friends");
-                    Friend[] friends = new Friend[jsonObjectFriends.size()];
-                    for (int i = 0; i < jsonObjectFriends.size(); i++) {
-                        friends[i] = new Friend(
-                                jsonObjectFriends.getJsonObject(i).getString("username"),
-                                jsonObjectFriends.getJsonObject(i).getBoolean("online"),
-                                jsonObjectFriends.getJsonObject(i).getInstant("lastSeen")
-                        );
-                    }
-                    promise.complete(friends);
-                } else {
-                    promise.fail(result.result().bodyAsJsonObject().getString("error"));
-                }
-            });
-        });
-        return promise.future();
+        return session.gameFriends();
+    }
+
+    /**
+     * Stream all friends of current user who have already bought this game,
+     * decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public static JsonArrayStream<Friend> streamGameFriends() {
+        return session.streamGameFriends();
+    }
+
+    /**
+     * Subscribe to the presence of the friends of current user
+     *
+     * The presence is pushed by the server over a connection kept open while there
+     * are listeners, instead of polling {@link #friends()}.
+     *
+     * @param listener Handler of every friend whose online status or lastSeen changes
+     *
+     * @return the future, succeeded once the presence of all friends is known
+     */
+    public static Future<Void> subscribePresence(Handler<Friend> listener) {
+        return session.subscribePresence(listener);
+    }
+
+    /**
+     * Set the handler of the presence events pushed by the server that cannot be decoded
+     *
+     * @param handler Handler of the decode error, or null to skip such events silently
+     */
+    public static void presenceExceptionHandler(Handler<Throwable> handler) {
+        session.presenceExceptionHandler(handler);
+    }
+
+    /**
+     * Unsubscribe from the presence of friends, closing the connection after the last listener
+     *
+     * @param listener Handler given to {@link #subscribePresence(Handler)}
+     */
+    public static void unsubscribePresence(Handler<Friend> listener) {
+        session.unsubscribePresence(listener);
+    }
+
+    /**
+     * Get the presence of all friends of current user, by username, as last pushed by the server
+     *
+     * @return the presence, empty if not subscribed
+     */
+    public static Map<String, Friend> getPresence() {
+        return session.getPresence();
     }
 
     /**
@@ -792,25 +627,29 @@ public class SusteamSdk {
      *
      * Send successfully if the future is succeeded.
      *
+     * Invites share the concurrency and rate limits of {@link #invite(Collection)}.
+     *
      * @param friendName Name of the friend, who must online
      *
      * @return the future
      */
     public static Future<Void> invite(String friendName) {
-        Promise<Void> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/friend/invite/" + friendName + "/" + SusteamSdk.gameKey).bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            if (result.result().bodyAsJsonObject().getBoolean("success")) {
-                promise.complete();
-            } else {
-                promise.fail(result.result().bodyAsJsonObject().getString("error"));
-            }
-        });
-        return promise.future();
+        return session.invite(friendName);
+    }
+
+    /**
+     * Send an invite message to every online friend of a list
+     *
+     * Friends not online in {@link #gameFriends()} are not sent anything and fail
+     * with "friend offline". The others are invited a few at a time within the
+     * rate limit, see {@link SdkOptions#setInviteRate(double)}.
+     *
+     * @param friendNames Names of the friends
+     *
+     * @return the future of the result of every friend, by name, failed if the friends could not be fetched
+     */
+    public static Future<Map<String, AsyncResult<Void>>> invite(Collection<String> friendNames) {
+        return session.invite(friendNames);
     }
 
     /**
@@ -820,20 +659,7 @@ public class SusteamSdk {
      * @return Whether user have bought it
      */
     public static Future<Boolean> checkBought(String gameKey) {
-        Promise<Boolean> promise = Promise.promise();
-        HttpRequest<Buffer> request = client.get("/api/check/key/" + gameKey).bearerTokenAuthentication(token);
-        request.send(result -> {
-            if (result.failed()) {
-                promise.fail(result.cause());
-                return;
-            }
-            if (result.result().bodyAsJsonObject().getBoolean("success")) {
-                promise.complete(result.result().bodyAsJsonObject().getBoolean("bought"));
-            } else {
-                promise.fail(result.result().bodyAsJsonObject().getString("error"));
-            }
-        });
-        return promise.future();
+        return session.checkBought(gameKey);
     }
 //    public static void main(String[] args) {
 //        SusteamSdk.init(
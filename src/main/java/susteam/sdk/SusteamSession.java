@@ -0,0 +1,1851 @@
+package susteam.sdk;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+
+/**
+ * Session of a user in a game, created by {@link SusteamClient#session(String, String)}
+ *
+ * A session only holds what belongs to its token and game key: the cached user
+ * and game, queued achievement processes, journaled records and the cached rank.
+ * Requests go through the event loop and connections of its client.
+ *
+ * Concurrent identical reads share one request in flight, see {@link #getSharedReadsSaved()}.
+ * Calls failing on the way to the server are retried, and fail at once while the
+ * server is down, see {@link SdkOptions#setMaxRetries(int)}.
+ *
+ * While the server is unreachable, reads are served from a local store holding
+ * their last results, and writes are journaled there and replayed in order once
+ * {@link #isServerOnline()} succeeds again, see {@link SdkOptions#setOfflineMode(boolean)}.
+ */
+public class SusteamSession {
+
+    static final String FRIEND_OFFLINE = "friend offline";
+
+    private final SusteamClient owner;
+    private final Vertx vertx;
+    private final WebClient client;
+    private final String token;
+    private final String gameKey;
+    private final UserSession identity;
+    private final SaveSync saveSync;
+    private final RecordJournal recordJournal;
+    private final Leaderboard leaderboard;
+    private final FriendPresence presence;
+    private final InviteQueue invites;
+    private final SingleFlight flights = new SingleFlight();
+    private final ResponseCache cache;
+    private final MetricsSink metrics;
+    private final CircuitBreaker breaker;
+    private final long requestTimeout;
+    private final int fanOutLimit;
+    private final OfflineStore offline;
+    private final boolean offlineMode;
+    private final long reconcileInterval;
+    private Future<Game> game;
+    private Future<AchievementEngine> achievementEngine;
+    private volatile boolean batchBootstrap = true;
+    private volatile boolean bulkProcesses = true;
+    private long reconcileTimer = -1;
+    private boolean replaying;
+    private volatile SaveCodec saveCodec;
+    private volatile AchievementBatcher achievementBatcher;
+
+    /**
+     * @param owner The client creating the session
+     *
+     * @param token User token
+     *
+     * @param gameKey Key of the game, provided when creating a game
+     *
+     * @param options Options of the client
+     */
+    SusteamSession(SusteamClient owner, String token, String gameKey, SdkOptions options) {
+        this.owner = owner;
+        this.vertx = owner.vertx();
+        this.client = owner.webClient();
+        this.token = token;
+        this.gameKey = gameKey;
+        this.identity = new UserSession(client, token, options.getUserTtl(), options.getRequestTimeout());
+        this.cache = new ResponseCache(options.getResponseCacheMaxBytes(), options.getResponseCacheTtls());
+        this.metrics = options.getMetricsSink();
+        this.breaker = new CircuitBreaker(vertx, this::fetchServerOnline, options);
+        this.requestTimeout = options.getRequestTimeout();
+        this.fanOutLimit = options.concurrency();
+        this.offline = new OfflineStore(vertx, gameKey, token);
+        this.offlineMode = options.isOfflineMode();
+        this.reconcileInterval = options.getReconcileInterval();
+        this.saveSync = new SaveSync(vertx, client, token, gameKey, requestTimeout);
+        this.achievementBatcher = new AchievementBatcher(
+                vertx,
+                this::updateUserAchievementProcess,
+                AchievementBatcher.DEFAULT_INTERVAL,
+                AchievementBatcher.DEFAULT_SIZE,
+                true
+        );
+        this.leaderboard = new Leaderboard(vertx, this::fetchRank, Leaderboard.DEFAULT_TTL);
+        this.presence = new FriendPresence(vertx, owner.httpClient(), options, token,
+                () -> streamFriends().collect(Friend[]::new));
+        this.invites = new InviteQueue(vertx, friendName -> breaker.call(false, () -> sendInvite(friendName)),
+                options.getInviteConcurrency(), options.getInviteRate(), options.getInviteBurst());
+        this.recordJournal = new RecordJournal(vertx, gameKey, token, this::postRecord);
+        offline.loaded().onSuccess(it -> {
+            if (offlineMode && offline.pending()) {
+                startReconciling();
+            }
+        });
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getGameKey() {
+        return gameKey;
+    }
+
+    /**
+     * Get the number of calls to reads shared while in flight, such as
+     * {@link #achievement(String)}, {@link #getUserMaxScore()} or {@link #checkBought(String)}
+     *
+     * @return the number of calls
+     */
+    public long getSharedReadCalls() {
+        return flights.calls();
+    }
+
+    /**
+     * Get the number of calls to reads answered by an identical call in flight,
+     * so without sending a request
+     *
+     * @return the number of requests saved
+     */
+    public long getSharedReadsSaved() {
+        return flights.shared();
+    }
+
+    /**
+     * Get the number of reads answered by the response cache
+     *
+     * @return the number of hits
+     */
+    public long getResponseCacheHits() {
+        return cache.hits();
+    }
+
+    /**
+     * Get the number of cached reads sent to the server, because not cached or expired
+     *
+     * @return the number of misses
+     */
+    public long getResponseCacheMisses() {
+        return cache.misses();
+    }
+
+    /**
+     * Get the number of results evicted from the response cache to stay within its size
+     *
+     * @return the number of evictions
+     */
+    public long getResponseCacheEvictions() {
+        return cache.evictions();
+    }
+
+    /**
+     * Drop every cached result, so the next reads are sent to the server
+     */
+    public void clearResponseCache() {
+        cache.clear();
+    }
+
+    /**
+     * Send everything still queued and end the session
+     *
+     * The client and its connections stay open for other sessions.
+     *
+     * @return the future, completed once queued updates are sent or journaled
+     */
+    public Future<Void> close() {
+        leaderboard.close();
+        presence.close();
+        invites.close();
+        stopReconciling();
+        return flushAchievementEngine()
+                .compose(it -> achievementBatcher.flush())
+                .recover(it -> Future.succeededFuture())
+                .compose(it -> recordJournal.close())
+                .onComplete(it -> owner.closed(this));
+    }
+
+    /**
+     * Set the codec compressing uploaded saves, or null to upload them uncompressed
+     *
+     * Saves are decompressed on load according to their header whatever the
+     * codec is, so uncompressed saves always load.
+     *
+     * @param codec The codec, see {@link SaveCodecs}
+     */
+    public void setSaveCodec(SaveCodec codec) {
+        this.saveCodec = codec;
+    }
+
+    /**
+     * Get the error message of a failed response, dropping the cached user
+     * if the server reports the token as invalid
+     *
+     * @param body The response body
+     *
+     * @return the error message
+     */
+    private String error(JsonObject body) {
+        return error(body.getString("error"));
+    }
+
+    private String error(String error) {
+        if (UserSession.TOKEN_INVALID.equals(error)) {
+            identity.invalidate();
+        }
+        return error;
+    }
+
+    /**
+     * Create a response handler completing promise with the payload of a successful response
+     *
+     * The body is parsed once by the request codec and only read here.
+     *
+     * @param promise The promise to complete
+     *
+     * @param payload Maps a successful body to the result
+     *
+     * @return the handler
+     */
+    private <T> Handler<AsyncResult<HttpResponse<JsonObject>>> decode(Promise<T> promise, Function<JsonObject, T> payload) {
+        return res -> {
+            if (res.failed()) {
+                promise.fail(res.cause());
+                return;
+            }
+            if (res.result().statusCode() >= 500) {
+                promise.fail(new VertxException("server error " + res.result().statusCode()));
+                return;
+            }
+            JsonObject body = res.result().body();
+            if (body == null) {
+                promise.fail("json format invalid");
+                return;
+            }
+            if (!Boolean.TRUE.equals(body.getBoolean("success"))) {
+                promise.fail(error(body));
+                return;
+            }
+            T result;
+            try {
+                result = payload.apply(body);
+            } catch (RuntimeException e) {
+                promise.fail("json format invalid");
+                return;
+            }
+            promise.complete(result);
+        };
+    }
+
+    /**
+     * Read from the response cache, or else from an identical call in flight, or else from the server
+     *
+     * @param endpoint Method name, setting the ttl of its results
+     *
+     * @param key Method and arguments of the call
+     *
+     * @param fetch Sends the request
+     *
+     * @return the future
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Future<T> read(String endpoint, String key, Supplier<Future<T>> fetch) {
+        if (!cache.caches(endpoint)) {
+            return flights.run(key, () -> breaker.call(true, fetch));
+        }
+        Object cached = cache.get(key);
+        if (metrics != null) {
+            metrics.cache(endpoint, cached != null);
+        }
+        if (cached != null) {
+            return Future.succeededFuture((T) copy(cached));
+        }
+        long generation = cache.generation();
+        return flights.run(key, () -> breaker.call(true, fetch)).map(value -> {
+            cache.put(endpoint, key, copy(value), generation);
+            return value;
+        });
+    }
+
+    /**
+     * Copy an array result, so callers cannot change a cached one
+     */
+    private static Object copy(Object value) {
+        return value instanceof Object[] ? ((Object[]) value).clone() : value;
+    }
+
+    /**
+     * Keep the result of a read in the offline store, and serve the kept one while
+     * the server is unreachable
+     *
+     * @param key Key of the read in the store
+     *
+     * @param online The future of the read from the server
+     *
+     * @param toJson Maps a result to json
+     *
+     * @param fromJson Maps json back to a result
+     *
+     * @return the future
+     */
+    private <T> Future<T> offlineRead(String key, Future<T> online, Function<T, Object> toJson, Function<Object, T> fromJson) {
+        if (!offlineMode) {
+            return online;
+        }
+        return online.map(value -> {
+            offline.put(key, toJson.apply(value));
+            return value;
+        }).recover(failure -> {
+            if (!CircuitBreaker.unanswered(failure)) {
+                return Future.failedFuture(failure);
+            }
+            return offline.loaded().compose(loaded -> {
+                Object kept = offline.get(key);
+                if (kept == null) {
+                    return Future.failedFuture(failure);
+                }
+                try {
+                    return Future.succeededFuture(fromJson.apply(kept));
+                } catch (RuntimeException e) {
+                    return Future.failedFuture(failure);
+                }
+            }, unreadable -> Future.failedFuture(failure));
+        });
+    }
+
+    /**
+     * Send a write to the server, or journal it while the server is unreachable
+     *
+     * Writes are also journaled while older ones are not replayed yet, so they
+     * reach the server in order. If the offline store cannot be read back, a write
+     * not reaching the server fails with the cause instead of being journaled.
+     *
+     * @param online Sends the write
+     *
+     * @param journal Journals the write
+     *
+     * @return the future
+     */
+    private Future<Void> offlineWrite(Supplier<Future<Void>> online, Supplier<Future<Void>> journal) {
+        if (!offlineMode) {
+            return online.get();
+        }
+        return offline.loaded().compose(
+                loaded -> offline.pending() ? journal.get() : online.get().recover(failure ->
+                        CircuitBreaker.unanswered(failure) ? journal.get() : Future.failedFuture(failure)),
+                unreadable -> online.get().recover(failure ->
+                        Future.failedFuture(CircuitBreaker.unanswered(failure) ? unreadable : failure)));
+    }
+
+    private void journal(JsonObject write) {
+        offline.journal(write);
+        startReconciling();
+    }
+
+    private synchronized void startReconciling() {
+        if (reconcileTimer == -1) {
+            reconcileTimer = vertx.setPeriodic(reconcileInterval, it -> isServerOnline());
+        }
+    }
+
+    private synchronized void stopReconciling() {
+        if (reconcileTimer != -1) {
+            vertx.cancelTimer(reconcileTimer);
+            reconcileTimer = -1;
+        }
+    }
+
+    /**
+     * Replay the journaled writes in order, stopping at the first not reaching the server
+     */
+    private void replay() {
+        synchronized (this) {
+            if (replaying) {
+                return;
+            }
+            replaying = true;
+        }
+        replayNext();
+    }
+
+    private void replayNext() {
+        JsonObject write = offline.next();
+        if (write == null) {
+            synchronized (this) {
+                replaying = false;
+            }
+            stopReconciling();
+            return;
+        }
+        replay(write).onComplete(it -> {
+            // keep the write while the server is unreachable or the circuit open, only drop it once answered
+            if (it.failed() && (it.cause() instanceof ServerOfflineException || CircuitBreaker.unanswered(it.cause()))) {
+                synchronized (this) {
+                    replaying = false;
+                }
+                return;
+            }
+            offline.done(write);
+            replayNext();
+        });
+    }
+
+    /**
+     * Replay a journaled write
+     *
+     * A save written or deleted offline is dropped if the server has the save with a
+     * later savedTime, written by another device meanwhile, so the latest save wins.
+     */
+    private Future<Void> replay(JsonObject write) {
+        String saveName = write.getString("saveName");
+        switch (write.getString("op")) {
+            case "process":
+                return postUserAchievementProcess(write.getString("achievementName"), write.getInteger("rateOfProcess"));
+            case "save":
+                return savedLater(saveName, write.getInstant("savedTime"))
+                        .compose(later -> later ? Future.<Void>succeededFuture() : postSave(offline.save(saveName)))
+                        .onSuccess(it -> offline.forget(saveName));
+            case "delete":
+                return savedLater(saveName, write.getInstant("savedTime"))
+                        .compose(later -> later ? Future.<Void>succeededFuture() : postDeleteSave(saveName));
+            default:
+                return Future.succeededFuture();
+        }
+    }
+
+    private Future<Boolean> savedLater(String saveName, Instant savedTime) {
+        return flights.run("getAllGameSaveName", () -> breaker.call(true, () -> streamGameSaves().collect(GameSave[]::new)))
+                .map(saves -> {
+                    for (GameSave save : saves) {
+                        if (save.getSaveName().equals(saveName) && save.getSavedTime().isAfter(savedTime)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+    }
+
+    /**
+     * Record a save written offline in the kept list of saves
+     */
+    private void keepSaved(String saveName, Instant savedTime) {
+        JsonArray saves = (JsonArray) offline.get("getAllGameSaveName");
+        JsonArray kept = new JsonArray();
+        if (saves != null) {
+            for (int i = 0; i < saves.size(); i++) {
+                if (!saveName.equals(saves.getJsonObject(i).getString("saveName"))) {
+                    kept.add(saves.getJsonObject(i));
+                }
+            }
+        }
+        if (savedTime != null) {
+            JsonObject user = (JsonObject) offline.get("user");
+            JsonObject game = (JsonObject) offline.get("getGame");
+            Integer gameId = game == null ? null : game.getInteger("id");
+            kept.add(new JsonObject()
+                    .put("username", user == null ? "" : user.getString("username"))
+                    .put("gameId", gameId == null ? Integer.valueOf(0) : gameId)
+                    .put("saveName", saveName)
+                    .put("savedTime", savedTime));
+        }
+        offline.put("getAllGameSaveName", kept);
+    }
+
+    private static <T> JsonArray json(T[] array, Function<T, JsonObject> mapper) {
+        JsonArray json = new JsonArray();
+        for (T element : array) {
+            json.add(mapper.apply(element));
+        }
+        return json;
+    }
+
+    private static <T> T[] array(Object json, Function<JsonObject, T> mapper, IntFunction<T[]> create) {
+        JsonArray array = (JsonArray) json;
+        T[] result = create.apply(array.size());
+        for (int i = 0; i < result.length; i++) {
+            result[i] = mapper.apply(array.getJsonObject(i));
+        }
+        return result;
+    }
+
+    /**
+     * Send a request once created and stream the elements of an array field of its response
+     *
+     * @param request The future of the request
+     *
+     * @param field Name of the array field
+     *
+     * @param reader Reader of the elements
+     *
+     * @return the stream
+     */
+    private <T> JsonArrayStream<T> stream(Future<HttpRequest<Buffer>> request, String field, JsonArrayStream.Reader<T> reader) {
+        JsonArrayStream<T> stream = new JsonArrayStream<>(field, reader, this::error);
+        request.onComplete(it -> {
+            if (it.failed()) {
+                stream.fail(it.cause());
+                return;
+            }
+            it.result().as(BodyCodec.pipe(stream.sink())).send(res -> {
+                if (res.failed()) {
+                    stream.fail(res.cause());
+                } else {
+                    stream.end(res.result().statusCode());
+                }
+            });
+        });
+        return stream;
+    }
+
+    /**
+     * Fetch everything a game needs at launch, in as few round trips as possible
+     *
+     * The snapshot is fetched by one request when the server offers a bootstrap
+     * endpoint. Otherwise the user and the game are fetched first, together, then
+     * the achievements, the processes of the user, the max score, the saves and the
+     * friends in game are all fetched in parallel. Results are cached as if read
+     * one by one, so following reads are served locally.
+     *
+     * The max score is null if the user has no record.
+     *
+     * @return the future of the snapshot
+     */
+    public Future<SessionSnapshot> bootstrap() {
+        if (!batchBootstrap) {
+            return fanOutBootstrap();
+        }
+        long generation = cache.generation();
+        return breaker.call(true, this::fetchBootstrap).compose(snapshot -> {
+            if (snapshot == null) {
+                batchBootstrap = false;
+                return fanOutBootstrap();
+            }
+            prime(snapshot, generation);
+            return Future.succeededFuture(snapshot);
+        }, failure -> CircuitBreaker.unanswered(failure) ? fanOutBootstrap() : Future.failedFuture(failure));
+    }
+
+    /**
+     * Fetch the snapshot from the bootstrap endpoint, the future holds null if the server has none
+     */
+    private Future<SessionSnapshot> fetchBootstrap() {
+        return optional(client.get("/api/bootstrap/" + gameKey), SessionSnapshotKt::toSessionSnapshot);
+    }
+
+    /**
+     * Send a request to an endpoint the server may not offer
+     *
+     * @param request The request to send
+     *
+     * @param payload Maps a successful body to the result
+     *
+     * @return the future, holding null if the server answered 404
+     */
+    private <T> Future<T> optional(HttpRequest<Buffer> request, Function<JsonObject, T> payload) {
+        Promise<T> promise = Promise.promise();
+        request.bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .send(res -> {
+                    if (res.failed()) {
+                        promise.fail(res.cause());
+                        return;
+                    }
+                    if (res.result().statusCode() == 404) {
+                        promise.complete(null);
+                        return;
+                    }
+                    if (res.result().statusCode() >= 500) {
+                        promise.fail(new VertxException("server error " + res.result().statusCode()));
+                        return;
+                    }
+                    JsonObject body;
+                    try {
+                        body = res.result().bodyAsJsonObject();
+                    } catch (RuntimeException e) {
+                        promise.fail("json format invalid");
+                        return;
+                    }
+                    if (body == null) {
+                        promise.fail("json format invalid");
+                        return;
+                    }
+                    if (!Boolean.TRUE.equals(body.getBoolean("success"))) {
+                        promise.fail(error(body));
+                        return;
+                    }
+                    try {
+                        promise.complete(payload.apply(body));
+                    } catch (RuntimeException e) {
+                        promise.fail("json format invalid");
+                    }
+                });
+        return promise.future();
+    }
+
+    private Future<SessionSnapshot> fanOutBootstrap() {
+        Future<User> user = user();
+        Future<Game> game = getGame();
+        return CompositeFuture.all(user, game).compose(ready -> {
+            Future<Achievement[]> achievements = getAllAchievement();
+            Future<Map<String, Integer>> processes = getAllUserAchievementProcesses().map(all -> {
+                Map<String, Integer> rates = new LinkedHashMap<>();
+                all.forEach((name, process) -> rates.put(name, process.getRateOfProcess()));
+                return rates;
+            });
+            Future<Integer> maxScore = getUserMaxScore().otherwise((Integer) null);
+            Future<GameSave[]> saves = getAllGameSaveName();
+            Future<Friend[]> friends = gameFriends();
+            return CompositeFuture.all(achievements, processes, maxScore, saves, friends).map(all -> new SessionSnapshot(
+                    user.result(),
+                    game.result(),
+                    Collections.unmodifiableList(Arrays.asList(achievements.result())),
+                    Collections.unmodifiableMap(processes.result()),
+                    maxScore.result(),
+                    Collections.unmodifiableList(Arrays.asList(saves.result())),
+                    Collections.unmodifiableList(Arrays.asList(friends.result()))
+            ));
+        });
+    }
+
+    /**
+     * Cache the parts of a snapshot fetched at once as if read one by one
+     */
+    private void prime(SessionSnapshot snapshot, long generation) {
+        synchronized (this) {
+            if (game == null) {
+                game = Future.succeededFuture(snapshot.getGame());
+            }
+        }
+        cache.put("getAllAchievement", "getAllAchievement", snapshot.getAchievements().toArray(new Achievement[0]), generation);
+        snapshot.getAchievementProcesses().forEach((name, process) ->
+                cache.put("getUserAchievementProcess", "getUserAchievementProcess/" + name, process, generation));
+        if (snapshot.getMaxScore() != null) {
+            cache.put("getUserMaxScore", "getUserMaxScore", snapshot.getMaxScore(), generation);
+        }
+        cache.put("gameFriends", "gameFriends", snapshot.getGameFriends().toArray(new Friend[0]), generation);
+    }
+
+    /**
+     * Get Game Future (including fields: gameId, name, author,
+     * publishTime, introduction and description) according to the game key
+     *
+     * The game is fetched once and then cached, concurrent callers share the same request.
+     *
+     * @return the future
+     */
+    public synchronized Future<Game> getGame() {
+        if (game == null) {
+            return refreshGame();
+        }
+        return game;
+    }
+
+    /**
+     * Drop the cached game and fetch it again
+     *
+     * @return the future
+     */
+    public synchronized Future<Game> refreshGame() {
+        Future<Game> future = offlineRead("getGame", breaker.call(true, this::fetchGame),
+                GameKt::toJson, json -> GameKt.toGame((JsonObject) json));
+        future.onFailure(it -> dropGame(future));
+        game = future;
+        return future;
+    }
+
+    private synchronized void dropGame(Future<Game> failed) {
+        if (game == failed) {
+            game = null;
+        }
+    }
+
+    private Future<Game> fetchGame() {
+        Promise<Game> promise = Promise.promise();
+        client.get("/api/gameKey/" + gameKey)
+                .timeout(requestTimeout)
+                .as(BodyCodec.jsonObject())
+                .send(decode(promise, body -> GameKt.toGame(body.getJsonObject("game"))));
+        return promise.future();
+    }
+
+    /**
+     * Create a void future whether server is online
+     *
+     * Server is online if the future is succeeded.
+     *
+     * @return the future
+     */
+    public Future<Void> isServerOnline() {
+        return flights.run("isServerOnline", this::fetchServerOnline).onSuccess(it -> {
+            if (offlineMode && offline.pending()) {
+                replay();
+            }
+        });
+    }
+
+    private Future<Void> fetchServerOnline() {
+        Promise<Void> promise = Promise.promise();
+        client.get("/api/token")
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .as(BodyCodec.jsonObject())
+                .send(result -> {
+                    if (result.failed()) {
+                        promise.fail(result.cause());
+                        return;
+                    }
+                    JsonObject body = result.result().body();
+                    if (body != null && body.getBoolean("token") != null) {
+                        promise.complete();
+                    } else {
+                        promise.fail("json format invalid");
+                    }
+                });
+        return promise.future().onComplete(it -> breaker.report(it.cause()));
+    }
+
+    /**
+     * Get User Future (User, contains username, mail,
+     * avatar, description) according to current user
+     *
+     * @return the future
+     */
+    public Future<User> user() {
+        return offlineRead("user", identity.user(), user -> UserKt.toJson(user).put("balance", user.getBalance()),
+                json -> UserKt.toUser((JsonObject) json));
+    }
+
+    /**
+     * Get GameSave Array Future including all game saves of current user in game
+     *
+     * @return the future
+     */
+    public Future<GameSave[]> getAllGameSaveName() {
+        return offlineRead("getAllGameSaveName",
+                flights.run("getAllGameSaveName", () -> breaker.call(true, () -> streamGameSaves().collect(GameSave[]::new))),
+                saves -> json(saves, GameSaveKt::toJson),
+                json -> array(json, GameSaveKt::toGameSave, GameSave[]::new));
+    }
+
+    /**
+     * Stream all game saves of current user in game, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public JsonArrayStream<GameSave> streamGameSaves() {
+        return stream(identity.user().map(user ->
+                client.get("/api/save/" + user.getUsername() + "/" + gameKey)
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+        ), "gameSaves", JsonReaders.gameSave());
+    }
+
+    /**
+     * Delete a game save and return a void future.
+     *
+     * Delete successfully if the future is succeeded.
+     *
+     * @param fileName The file name of a game save
+     *
+     * @return A void future
+     */
+    public Future<Void> deleteSave(String fileName) {
+        return offlineWrite(() -> postDeleteSave(fileName), () -> {
+            offline.supersede(fileName);
+            offline.forget(fileName);
+            keepSaved(fileName, null);
+            journal(new JsonObject().put("op", "delete").put("saveName", fileName).put("savedTime", Instant.now()));
+            return Future.succeededFuture();
+        });
+    }
+
+    private Future<Void> postDeleteSave(String fileName) {
+        return breaker.call(true, () -> sendDeleteSave(fileName));
+    }
+
+    private Future<Void> sendDeleteSave(String fileName) {
+        Promise<Void> promise = Promise.promise();
+            identity.user().onComplete(result -> {
+                if (result.failed()) {
+                    promise.fail(result.cause());
+                    return;
+                }
+                String username = result.result().getUsername();
+                saveSync.forget(username, fileName);
+
+                Promise<Void> deleted = Promise.promise();
+                client.get("/api/save/" + username + "/" + gameKey + "/" + fileName + "/delete")
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+                        .as(BodyCodec.jsonObject())
+                        .send(decode(deleted, body -> null));
+                // keep the cached save until the server has deleted it
+                deleted.future().onComplete(it -> {
+                    if (it.failed()) {
+                        promise.fail(it.cause());
+                        return;
+                    }
+                    getGame().onComplete(game -> {
+                        if (game.failed()) {
+                            promise.complete();
+                            return;
+                        }
+                        vertx.<Void>executeBlocking(blocking -> {
+                            SaveCache.forget(SaveCache.file(game.result().getId(), username, fileName));
+                            blocking.complete();
+                        }, false, forgotten -> promise.complete());
+                    });
+                });
+            });
+        return promise.future();
+    }
+
+    /**
+     * Save a file and return a void future. The file should first be saved in local dir, then pass the file to server.
+     *
+     * Save successfully if the future is succeeded. The file is streamed from disk
+     * as a chunked application/octet-stream body, so it is never held in memory.
+     * If a codec is set by {@link #setSaveCodec(SaveCodec)}, it is compressed
+     * into a temporary file first.
+     *
+     * @param file File need to be saved
+     *
+     * @return A void future
+     */
+    public Future<Void> save(File file) {
+        return offlineWrite(() -> postSave(file), () -> offline.keep(file.getName(), file).map(it -> {
+            journalSave(file.getName());
+            return null;
+        }));
+    }
+
+    private Future<Void> postSave(File file) {
+        return breaker.call(true, () -> sendSave(file));
+    }
+
+    private void journalSave(String saveName) {
+        Instant savedTime = Instant.now();
+        offline.supersede(saveName);
+        keepSaved(saveName, savedTime);
+        journal(new JsonObject().put("op", "save").put("saveName", saveName).put("savedTime", savedTime));
+    }
+
+    private Future<Void> sendSave(File file) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+            saveSync.forget(username, file.getName());
+            SaveCodec codec = saveCodec;
+            if (codec == null) {
+                upload(username, file.getName(), file, promise);
+                return;
+            }
+            vertx.<File>executeBlocking(blocking -> {
+                try {
+                    File compressed = File.createTempFile("susteam", ".save");
+                    SaveCodecs.encode(file, compressed, codec);
+                    blocking.complete(compressed);
+                } catch (IOException e) {
+                    blocking.fail("file open fail");
+                }
+            }, false, compressed -> {
+                if (compressed.failed()) {
+                    promise.fail(compressed.cause());
+                    return;
+                }
+                Promise<Void> uploaded = Promise.promise();
+                upload(username, file.getName(), compressed.result(), uploaded);
+                uploaded.future().onComplete(it -> {
+                    vertx.fileSystem().delete(compressed.result().getPath(), deleted -> {});
+                    promise.handle(it);
+                });
+            });
+        });
+        return promise.future();
+    }
+
+    private void upload(String username, String saveName, File file, Promise<Void> promise) {
+        vertx.fileSystem().open(file.getAbsolutePath(), new OpenOptions().setRead(true).setWrite(false).setCreate(false), opened -> {
+            if (opened.failed()) {
+                promise.fail("file open fail");
+                return;
+            }
+            AsyncFile stream = opened.result();
+            saveRequest(username, saveName).sendStream(stream, res -> {
+                // the file is read to its end on success, close it however the request ended
+                stream.close(closed -> {});
+                decode(promise, body -> null).handle(res);
+            });
+        });
+    }
+
+    /**
+     * Save content in memory as a game save and return a void future.
+     *
+     * Save successfully if the future is succeeded.
+     *
+     * @param saveName The file name of the game save
+     *
+     * @param data Content of the game save
+     *
+     * @return A void future
+     */
+    public Future<Void> save(String saveName, Buffer data) {
+        return offlineWrite(() -> breaker.call(true, () -> sendSave(saveName, data)),
+                () -> offline.keep(saveName, data).map(it -> {
+                    journalSave(saveName);
+                    return null;
+                }));
+    }
+
+    private Future<Void> sendSave(String saveName, Buffer data) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+            saveSync.forget(username, saveName);
+            SaveCodec codec = saveCodec;
+            if (codec == null) {
+                saveRequest(username, saveName).sendBuffer(data, decode(promise, body -> null));
+                return;
+            }
+            vertx.<Buffer>executeBlocking(blocking -> {
+                try {
+                    blocking.complete(SaveCodecs.encode(data, codec));
+                } catch (IOException e) {
+                    blocking.fail("compress fail");
+                }
+            }, false, compressed -> {
+                if (compressed.failed()) {
+                    promise.fail(compressed.cause());
+                    return;
+                }
+                saveRequest(username, saveName).sendBuffer(compressed.result(), decode(promise, body -> null));
+            });
+        });
+        return promise.future();
+    }
+
+    /**
+     * Save content in memory as a game save and return a void future.
+     *
+     * Save successfully if the future is succeeded. The remaining bytes of the
+     * buffer are sent without being copied.
+     *
+     * @param saveName The file name of the game save
+     *
+     * @param data Content of the game save
+     *
+     * @return A void future
+     */
+    public Future<Void> save(String saveName, ByteBuffer data) {
+        return save(saveName, Buffer.buffer(Unpooled.wrappedBuffer(data)));
+    }
+
+    /**
+     * Save a file by uploading only what changed since it was last synced and return a void future.
+     *
+     * Sync successfully if the future is succeeded. Nothing is uploaded if the file
+     * is unchanged, and the whole file is uploaded if the server has no chunked saves.
+     *
+     * @param file File need to be saved
+     *
+     * @return A void future
+     */
+    public Future<Void> sync(File file) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            saveSync.sync(result.result().getUsername(), file, () -> save(file)).onComplete(promise);
+        });
+        return promise.future();
+    }
+
+    private HttpRequest<JsonObject> saveRequest(String username, String saveName) {
+        return client
+                .post("/api/save/" + username + "/" + gameKey + "/" + saveName)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .putHeader("Content-Type", "application/octet-stream")
+                .as(BodyCodec.jsonObject());
+    }
+
+    /**
+     * Load a file and return a future of the local file
+     *
+     * Load successfully if the future is succeeded. The save is streamed to a
+     * temporary file next to the target and moved over it once fully received,
+     * so it is never held in memory and a failed download keeps the old file.
+     * Compressed saves are decompressed on the way.
+     *
+     * Loaded saves are cached per game and user. A cached save is only downloaded
+     * again if the server reports it changed, by a conditional request when the
+     * server sent an ETag or Last-Modified, or else by its savedTime.
+     *
+     * @param fileName The file name need to load from server
+     *
+     * @return the future
+     */
+    public Future<File> load(String fileName) {
+
+        Promise<File> promise = Promise.promise();
+
+        getGame().onComplete(it -> {
+            if (it.failed()) {
+                promise.fail(it.cause());
+                return;
+            }
+            Game game = it.result();
+            user().onComplete(result -> {
+                if (result.failed()) {
+                    promise.fail(result.cause());
+                    return;
+                }
+                String username = result.result().getUsername();
+                File file = SaveCache.file(game.getId(), username, fileName);
+                vertx.<JsonObject>executeBlocking(blocking -> {
+                    // the download streams into the dir of the save
+                    file.getParentFile().mkdirs();
+                    blocking.complete(SaveCache.meta(file));
+                }, false, cached -> {
+                    JsonObject meta = cached.result();
+                    if (meta != null && (meta.containsKey("etag") || meta.containsKey("lastModified"))) {
+                        download(username, fileName, file, meta, meta.getString("savedTime")).onComplete(promise);
+                        return;
+                    }
+                    getAllGameSaveName().onComplete(saves -> {
+                        String savedTime = null;
+                        if (saves.succeeded()) {
+                            for (GameSave save : saves.result()) {
+                                if (save.getSaveName().equals(fileName)) {
+                                    savedTime = save.getSavedTime().toString();
+                                }
+                            }
+                        }
+                        if (meta != null && savedTime != null && savedTime.equals(meta.getString("savedTime"))) {
+                            promise.complete(file);
+                            return;
+                        }
+                        download(username, fileName, file, null, savedTime).onComplete(promise);
+                    });
+                });
+            });
+        });
+        return promise.future();
+    }
+
+    /**
+     * Download a save into its local file, revalidating the cached one if it has validators
+     */
+    private Future<File> download(String username, String fileName, File file, JsonObject meta, String savedTime) {
+        Future<File> downloaded = breaker.call(true, () -> {
+            Promise<File> promise = Promise.promise();
+            download(username, fileName, file, meta, savedTime, promise);
+            return promise.future();
+        });
+        if (!offlineMode) {
+            return downloaded;
+        }
+        return downloaded.recover(failure -> {
+            if (!CircuitBreaker.unanswered(failure)) {
+                return Future.failedFuture(failure);
+            }
+            // serve the save written offline, or else the one loaded last
+            File kept = offline.save(fileName);
+            if (kept.isFile()) {
+                return Future.succeededFuture(kept);
+            }
+            return file.isFile() ? Future.succeededFuture(file) : Future.failedFuture(failure);
+        });
+    }
+
+    private void download(String username, String fileName, File file, JsonObject meta, String savedTime, Promise<File> promise) {
+        String part = file.getPath() + ".part";
+        OpenOptions options = new OpenOptions().setWrite(true).setCreate(true).setTruncateExisting(true);
+        vertx.fileSystem().open(part, options, opened -> {
+            if (opened.failed()) {
+                promise.fail("file error");
+                return;
+            }
+            HttpRequest<Void> request = client.get("/api/save/" + username + "/" + gameKey + "/" + fileName)
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.pipe(opened.result()));
+            if (meta != null && meta.containsKey("etag")) {
+                request.putHeader("If-None-Match", meta.getString("etag"));
+            }
+            if (meta != null && meta.containsKey("lastModified")) {
+                request.putHeader("If-Modified-Since", meta.getString("lastModified"));
+            }
+            request.send(res -> {
+                if (res.failed() || res.result().statusCode() != 200) {
+                    opened.result().close(closed -> vertx.fileSystem().delete(part, deleted -> {}));
+                    if (res.failed()) {
+                        promise.fail(res.cause());
+                    } else if (res.result().statusCode() == 304 && meta != null) {
+                        promise.complete(file);
+                    } else {
+                        promise.fail("file error");
+                    }
+                    return;
+                }
+                String etag = res.result().getHeader("ETag");
+                String lastModified = res.result().getHeader("Last-Modified");
+                vertx.<Void>executeBlocking(blocking -> {
+                    try {
+                        SaveCodecs.decode(new File(part), file);
+                        SaveCache.record(file, savedTime, etag, lastModified);
+                        blocking.complete();
+                    } catch (IOException e) {
+                        blocking.fail("file error");
+                    }
+                }, false, decoded -> {
+                    if (decoded.failed()) {
+                        promise.fail(decoded.cause());
+                        return;
+                    }
+                    promise.complete(file);
+                });
+            });
+        });
+    }
+
+    /**
+     * Update an achievement in the game and return a void future
+     *
+     * Update successfully if the future is succeeded.
+     *
+     * @param achievementName The achievement name
+     *
+     * @param rateOfProcess User current process
+     *
+     * @return the future
+     *
+     */
+    public Future<Void> updateUserAchievementProcess(String achievementName, int rateOfProcess) {
+        return offlineWrite(() -> postUserAchievementProcess(achievementName, rateOfProcess), () -> {
+            offline.put("getUserAchievementProcess/" + achievementName, rateOfProcess);
+            journal(new JsonObject()
+                    .put("op", "process")
+                    .put("achievementName", achievementName)
+                    .put("rateOfProcess", rateOfProcess));
+            return Future.succeededFuture();
+        });
+    }
+
+    private Future<Void> postUserAchievementProcess(String achievementName, int rateOfProcess) {
+        return breaker.call(true, () -> sendUserAchievementProcess(achievementName, rateOfProcess));
+    }
+
+    private Future<Void> sendUserAchievementProcess(String achievementName, int rateOfProcess) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.put("username", username);
+            jsonObject.put("achievementName", achievementName);
+            jsonObject.put("rateOfProcess", rateOfProcess);
+
+            client
+                    .post("/api/achieveProcess/" + gameKey)
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .sendJson(jsonObject, decode(promise, body -> {
+                        cache.invalidate("getUserAchievementProcess/" + achievementName);
+                        return null;
+                    }));
+        });
+        return promise.future();
+    }
+
+    /**
+     * Queue the process of an achievement, to be sent with other queued processes
+     *
+     * Queued processes of the same achievement are coalesced, so only one update per
+     * achievement is sent per flush whatever the number of calls.
+     *
+     * @param achievementName The achievement name
+     *
+     * @param rateOfProcess User current process
+     *
+     * @return the future of the flush sending it
+     */
+    public Future<Void> queueUserAchievementProcess(String achievementName, int rateOfProcess) {
+        return achievementBatcher.add(achievementName, rateOfProcess);
+    }
+
+    /**
+     * Send all queued achievement processes now
+     *
+     * @return the future, failed if any update failed
+     */
+    public Future<Void> flushUserAchievementProcess() {
+        return achievementBatcher.flush();
+    }
+
+    /**
+     * Configure how queued achievement processes are sent, flushing those already queued
+     *
+     * @param flushInterval Milliseconds a queued process waits at most before being sent
+     *
+     * @param flushSize Number of distinct queued achievements triggering a flush
+     *
+     * @param keepMax Whether to send the max queued process of an achievement instead of the latest
+     */
+    public void setAchievementBatching(long flushInterval, int flushSize, boolean keepMax) {
+        AchievementBatcher old = achievementBatcher;
+        achievementBatcher = new AchievementBatcher(
+                vertx, this::updateUserAchievementProcess, flushInterval, flushSize, keepMax);
+        old.flush();
+    }
+
+    /**
+     * Add an achievement in the game and return a void future
+     *
+     * Add successfully if the future is succeeded.
+     *
+     * @param achievementName The name of achievement
+     *
+     * @param description Description of achievement
+     *
+     * @param achievementCount Total count need to finished
+     *
+     * @return Void
+     */
+    public Future<Void> addAchievement(String achievementName, String description, int achievementCount) {
+        return breaker.call(false, () -> sendAchievement(achievementName, description, achievementCount));
+    }
+
+    private Future<Void> sendAchievement(String achievementName, String description, int achievementCount) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.put("achievementName", achievementName);
+            jsonObject.put("description", description);
+            jsonObject.put("achievementCount", achievementCount);
+
+            client
+                    .post("/api/achievement/" + gameKey)
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .sendJson(jsonObject, decode(promise, body -> {
+                        cache.invalidate("getAllAchievement");
+                        cache.invalidate("achievement/" + achievementName);
+                        return null;
+                    }));
+        });
+        return promise.future();
+    }
+
+    /**
+     * Get Achievement Array Future including all achievements of current user in game
+     *
+     * @return the future
+     */
+    public Future<Achievement[]> getAllAchievement() {
+        return offlineRead("getAllAchievement",
+                read("getAllAchievement", "getAllAchievement", () -> streamAchievements().collect(Achievement[]::new)),
+                achievements -> json(achievements, AchievementKt::toJson),
+                json -> array(json, AchievementKt::toAchievement, Achievement[]::new));
+    }
+
+    /**
+     * Stream all achievements of current user in game, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public JsonArrayStream<Achievement> streamAchievements() {
+        return stream(identity.user().map(user ->
+                client.get("/api/achievement/" + gameKey)
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+        ), "achievements", JsonReaders.achievement());
+    }
+
+    /**
+     * Get Achievement Future according to achievementName of current user
+     *
+     * @param achievementName Name of achievement
+     *
+     * @return the future
+     */
+    public Future<Achievement> achievement(String achievementName) {
+        return read("achievement", "achievement/" + achievementName, () -> fetchAchievement(achievementName));
+    }
+
+    private Future<Achievement> fetchAchievement(String achievementName) {
+        Promise<Achievement> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            client.get("/api/achievement/" + gameKey + "/" + URLEncoder.encode(achievementName, StandardCharsets.UTF_8))
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .send(decode(promise, body -> AchievementKt.toAchievement(body.getJsonObject("achievement"))));
+        });
+        return promise.future();
+    }
+
+    /**
+     * Get an Integer future representing current process of this achievement in the game
+     *
+     * @param achievementName Name of achievement
+     *
+     * @return the future
+     */
+    public Future<Integer> getUserAchievementProcess(String achievementName) {
+        String key = "getUserAchievementProcess/" + achievementName;
+        return offlineRead(key, read("getUserAchievementProcess", key, () -> fetchUserAchievementProcess(achievementName)),
+                rate -> rate, json -> (Integer) json);
+    }
+
+    private Future<Integer> fetchUserAchievementProcess(String achievementName) {
+        Promise<Integer> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+
+            client.get("/api/achieveProcess/" + username + "/" + gameKey + "/" + URLEncoder.encode(achievementName, StandardCharsets.UTF_8))
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .send(decode(promise, body -> body.getJsonObject("userAchievementProcess").getInteger("rateOfProcess")));
+        });
+        return promise.future();
+    }
+
+    /**
+     * Get the engine tracking the progress of achievements locally, loading it once
+     *
+     * The engine starts from the achievements of the game and the processes of the
+     * user, then takes progress events, detects unlocks and sends the grown
+     * progress to the server by itself, see {@link AchievementEngine}. It fails to
+     * load rather than start an achievement whose process could not be fetched at 0.
+     *
+     * @return the future
+     */
+    public synchronized Future<AchievementEngine> getAchievementEngine() {
+        if (achievementEngine == null || achievementEngine.failed()) {
+            achievementEngine = getAllAchievement().compose(achievements ->
+                    getAllUserAchievementProcesses().map(processes -> new AchievementEngine(vertx, achievements, processes,
+                            this::updateUserAchievementProcess, AchievementBatcher.DEFAULT_INTERVAL)));
+        }
+        return achievementEngine;
+    }
+
+    private synchronized Future<Void> flushAchievementEngine() {
+        if (achievementEngine == null || !achievementEngine.succeeded()) {
+            return Future.succeededFuture();
+        }
+        return achievementEngine.result().flush();
+    }
+
+    /**
+     * Get the processes of current user of all achievements in the game, by achievement name
+     *
+     * They are fetched by one request when the server offers it, or else by one
+     * request per achievement, as many in flight as the connections carry at once.
+     * Achievements the user has no process of are left out, any other error
+     * answered for an achievement fails the future. The processes are cached for
+     * {@link #getUserAchievementProcess(String)}.
+     *
+     * @return the future
+     */
+    public Future<Map<String, UserAchievementProcess>> getAllUserAchievementProcesses() {
+        return flights.run("getAllUserAchievementProcesses", () -> identity.user().compose(user ->
+                getAllAchievement().compose(achievements -> fetchAllUserAchievementProcesses(user.getUsername(), achievements))));
+    }
+
+    private Future<Map<String, UserAchievementProcess>> fetchAllUserAchievementProcesses(String username, Achievement[] achievements) {
+        long generation = cache.generation();
+        Future<Map<String, UserAchievementProcess>> fetched;
+        if (bulkProcesses) {
+            fetched = breaker.call(true, () -> optional(client.get("/api/achieveProcess/" + username + "/" + gameKey),
+                    body -> body.getJsonArray("userAchievementProcesses"))).compose(list -> {
+                if (list == null) {
+                    bulkProcesses = false;
+                    return fanOutUserAchievementProcesses(username, achievements);
+                }
+                Map<Integer, String> names = new HashMap<>();
+                for (Achievement achievement : achievements) {
+                    names.put(achievement.getAchievementId(), achievement.getAchievementName());
+                }
+                Map<String, UserAchievementProcess> processes = new LinkedHashMap<>();
+                for (int i = 0; i < list.size(); i++) {
+                    UserAchievementProcess process = AchievementKt.toUserAchievementProcess(list.getJsonObject(i));
+                    String name = names.get(process.getAchievementId());
+                    if (name != null) {
+                        processes.put(name, process);
+                    }
+                }
+                return Future.succeededFuture(processes);
+            });
+        } else {
+            fetched = fanOutUserAchievementProcesses(username, achievements);
+        }
+        return fetched.map(processes -> {
+            processes.forEach((name, process) -> cache.put("getUserAchievementProcess",
+                    "getUserAchievementProcess/" + name, process.getRateOfProcess(), generation));
+            return Collections.unmodifiableMap(processes);
+        });
+    }
+
+    /**
+     * Fetch the process of every achievement, keeping at most fanOutLimit requests in flight
+     */
+    private Future<Map<String, UserAchievementProcess>> fanOutUserAchievementProcesses(String username, Achievement[] achievements) {
+        Promise<Map<String, UserAchievementProcess>> promise = Promise.promise();
+        UserAchievementProcess[] processes = new UserAchievementProcess[achievements.length];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger(Math.min(fanOutLimit, achievements.length));
+        if (running.get() == 0) {
+            return Future.succeededFuture(new LinkedHashMap<>());
+        }
+        Runnable[] worker = new Runnable[1];
+        worker[0] = () -> {
+            int i = next.getAndIncrement();
+            if (i >= achievements.length || promise.future().isComplete()) {
+                if (running.decrementAndGet() == 0) {
+                    Map<String, UserAchievementProcess> fetched = new LinkedHashMap<>();
+                    for (int j = 0; j < achievements.length; j++) {
+                        if (processes[j] != null) {
+                            fetched.put(achievements[j].getAchievementName(), processes[j]);
+                        }
+                    }
+                    promise.tryComplete(fetched);
+                }
+                return;
+            }
+            String name = achievements[i].getAchievementName();
+            breaker.call(true, () -> fetchProcess(username, name)).onComplete(res -> {
+                if (res.succeeded()) {
+                    processes[i] = res.result();
+                } else {
+                    promise.tryFail(res.cause());
+                }
+                worker[0].run();
+            });
+        };
+        for (int i = running.get(); i > 0; i--) {
+            worker[0].run();
+        }
+        return promise.future();
+    }
+
+    /**
+     * Fetch the process of an achievement, the future holds null if the user has none
+     *
+     * The user has none if the server answers 404 or a success without a process.
+     */
+    private Future<UserAchievementProcess> fetchProcess(String username, String achievementName) {
+        return optional(client.get("/api/achieveProcess/" + username + "/" + gameKey + "/" + URLEncoder.encode(achievementName, StandardCharsets.UTF_8)),
+                body -> {
+                    JsonObject process = body.getJsonObject("userAchievementProcess");
+                    return process == null ? null : AchievementKt.toUserAchievementProcess(process);
+                });
+    }
+
+    /**
+     * Get Record Array Future representing the records whose score are
+     * in rank of the game
+     *
+     * The rank is cached, and a smaller rank is served from a larger cached one.
+     * It is fetched again after the cache ttl or after a record is added.
+     *
+     * @param rankNum Number of records
+     *
+     * @return the future
+     */
+    public Future<Record[]> getRank(int rankNum) {
+        return leaderboard.rank(rankNum);
+    }
+
+    /**
+     * Subscribe to the records in rank of the game
+     *
+     * The handler gets the records once fetched, then again whenever they change.
+     * The rank is refreshed periodically while there are subscribers.
+     *
+     * @param rankNum Number of records
+     *
+     * @param handler Handler of the records
+     *
+     * @return the future, succeeded once the handler got the records
+     */
+    public Future<Void> subscribeRank(int rankNum, Handler<Record[]> handler) {
+        return leaderboard.subscribe(rankNum, handler);
+    }
+
+    /**
+     * Unsubscribe from the records in rank of the game
+     *
+     * @param handler Handler given to {@link #subscribeRank(int, Handler)}
+     */
+    public void unsubscribeRank(Handler<Record[]> handler) {
+        leaderboard.unsubscribe(handler);
+    }
+
+    /**
+     * Stream the records whose score are in rank of the game, decoded while the response arrives
+     *
+     * The records are always fetched from the server, bypassing the cached rank.
+     *
+     * @param rankNum Number of records
+     *
+     * @return the stream
+     */
+    public JsonArrayStream<Record> streamRank(int rankNum) {
+        return stream(Future.succeededFuture(
+                client.get("/api/record/" + gameKey + "/" + rankNum)
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+        ), "records", JsonReaders.record());
+    }
+
+    private Future<Record[]> fetchRank(int rankNum) {
+        return breaker.call(true, () -> streamRank(rankNum).collect(Record[]::new));
+    }
+
+
+    /**
+     * Get Integer Future representing the max score of current user in the game
+     *
+     * @return the future
+     */
+    public Future<Integer> getUserMaxScore() {
+        return offlineRead("getUserMaxScore", read("getUserMaxScore", "getUserMaxScore", this::fetchUserMaxScore),
+                score -> score, json -> (Integer) json);
+    }
+
+    private Future<Integer> fetchUserMaxScore() {
+        Promise<Integer> promise = Promise.promise();
+
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+
+            client.get("/api/record/max/" + gameKey + "/" + username)
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .send(decode(promise, body -> RecordKt.toRecord(body.getJsonObject("record")).getScore()));
+        });
+        return promise.future();
+    }
+
+    /**
+     * Upload a score record and return a void future.
+     *
+     * Upload successfully if the future is succeeded.
+     *
+     * @param score The record need to upload
+     *
+     * @return the future
+     */
+    public Future<Void> addRecord(int score) {
+        return offlineWrite(() -> postRecord(score), () -> {
+            Integer max = (Integer) offline.get("getUserMaxScore");
+            if (max == null || max < score) {
+                offline.put("getUserMaxScore", score);
+            }
+            return recordJournal.submit(score);
+        });
+    }
+
+    private Future<Void> postRecord(int score) {
+        return breaker.call(false, () -> sendRecord(score));
+    }
+
+    private Future<Void> sendRecord(int score) {
+
+        Promise<Void> promise = Promise.promise();
+        identity.user().onComplete(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            String username = result.result().getUsername();
+
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.put("username", username);
+            jsonObject.put("score", score);
+
+            client
+                    .post("/api/record/" + gameKey)
+                    .bearerTokenAuthentication(token)
+                    .timeout(requestTimeout)
+                    .as(BodyCodec.jsonObject())
+                    .sendJson(jsonObject, decode(promise, body -> {
+                        cache.invalidate("getUserMaxScore");
+                        leaderboard.invalidate();
+                        return null;
+                    }));
+        });
+        return promise.future();
+    }
+
+
+    /**
+     * Submit a score record without waiting for the server.
+     *
+     * The score is written to a local journal and uploaded in the background, in
+     * submission order. Scores that cannot be uploaded yet, because the server is
+     * unreachable or the process exits, are uploaded again after the next init.
+     *
+     * @param score The record need to upload
+     *
+     * @return the future, completed once the score is journaled
+     */
+    public Future<Void> submitRecord(int score) {
+        return recordJournal.submit(score);
+    }
+
+
+    /**
+     * Get Friend Array Future representing all friends of current user
+     *
+     * @return the future
+     */
+    public Future<Friend[]> friends() {
+        return read("friends", "friends", () -> streamFriends().collect(Friend[]::new));
+    }
+
+    /**
+     * Stream all friends of current user, decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public JsonArrayStream<Friend> streamFriends() {
+        return stream(Future.succeededFuture(
+                client.get("/api/friend")
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+        ), "friends", JsonReaders.friend());
+    }
+
+    /**
+     * Get Friend Array Future representing all friends of current user
+     * who who have already bought this game
+     *
+     * @return the future
+     */
+    public Future<Friend[]> gameFriends() {
+        return read("gameFriends", "gameFriends", () -> streamGameFriends().collect(Friend[]::new));
+    }
+
+    /**
+     * Stream all friends of current user who have already bought this game,
+     * decoded while the response arrives
+     *
+     * @return the stream
+     */
+    public JsonArrayStream<Friend> streamGameFriends() {
+        return stream(getGame().map(game ->
+                client.get("/api/friend/" + game.getId())
+                        .bearerTokenAuthentication(token)
+                        .timeout(requestTimeout)
+        ), "friends", JsonReaders.friend());
+    }
+
+    /**
+     * Subscribe to the presence of the friends of current user
+     *
+     * The presence is pushed by the server over a connection kept open while there
+     * are listeners, instead of polling {@link #friends()}.
+     *
+     * @param listener Handler of every friend whose online status or lastSeen changes
+     *
+     * @return the future, succeeded once the presence of all friends is known
+     */
+    public Future<Void> subscribePresence(Handler<Friend> listener) {
+        return presence.subscribe(listener);
+    }
+
+    /**
+     * Set the handler of the presence events pushed by the server that cannot be decoded
+     *
+     * @param handler Handler of the decode error, or null to skip such events silently
+     */
+    public void presenceExceptionHandler(Handler<Throwable> handler) {
+        presence.exceptionHandler(handler);
+    }
+
+    /**
+     * Unsubscribe from the presence of friends, closing the connection after the last listener
+     *
+     * @param listener Handler given to {@link #subscribePresence(Handler)}
+     */
+    public void unsubscribePresence(Handler<Friend> listener) {
+        presence.unsubscribe(listener);
+    }
+
+    /**
+     * Get the presence of all friends of current user, by username, as last pushed by the server
+     *
+     * @return the presence, empty if not subscribed
+     */
+    public Map<String, Friend> getPresence() {
+        return presence.friends();
+    }
+
+    /**
+     * Send an invite message to friend and return a void future.
+     *
+     * Send successfully if the future is succeeded.
+     *
+     * Invites share the concurrency and rate limits of {@link #invite(Collection)}.
+     *
+     * @param friendName Name of the friend, who must online
+     *
+     * @return the future
+     */
+    public Future<Void> invite(String friendName) {
+        return invites.offer(friendName);
+    }
+
+    /**
+     * Send an invite message to every online friend of a list
+     *
+     * Friends not online in {@link #gameFriends()} are not sent anything and fail
+     * with "friend offline". The others are invited a few at a time within the
+     * rate limit, see {@link SdkOptions#setInviteRate(double)}.
+     *
+     * @param friendNames Names of the friends
+     *
+     * @return the future of the result of every friend, by name, failed if the friends could not be fetched
+     */
+    public Future<Map<String, AsyncResult<Void>>> invite(Collection<String> friendNames) {
+        return gameFriends().compose(friends -> {
+            Set<String> online = new HashSet<>();
+            for (Friend friend : friends) {
+                if (friend.getOnline()) {
+                    online.add(friend.getUsername());
+                }
+            }
+            Map<String, Future<Void>> sent = new LinkedHashMap<>();
+            for (String friendName : friendNames) {
+                if (!sent.containsKey(friendName)) {
+                    sent.put(friendName, online.contains(friendName)
+                            ? invites.offer(friendName)
+                            : Future.failedFuture(FRIEND_OFFLINE));
+                }
+            }
+            Promise<Map<String, AsyncResult<Void>>> promise = Promise.promise();
+            CompositeFuture.join(new ArrayList<>(sent.values()))
+                    .onComplete(it -> promise.complete(new LinkedHashMap<>(sent)));
+            return promise.future();
+        });
+    }
+
+    private Future<Void> sendInvite(String friendName) {
+        Promise<Void> promise = Promise.promise();
+        client.get("/api/friend/invite/" + URLEncoder.encode(friendName, StandardCharsets.UTF_8) + "/" + gameKey)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .as(BodyCodec.jsonObject())
+                .send(decode(promise, body -> null));
+        return promise.future();
+    }
+
+    /**
+     * Check whether user have bought the game
+     *
+     * @param gameKey Game key of the game
+     * @return Whether user have bought it
+     */
+    public Future<Boolean> checkBought(String gameKey) {
+        return read("checkBought", "checkBought/" + gameKey, () -> fetchBought(gameKey));
+    }
+
+    private Future<Boolean> fetchBought(String gameKey) {
+        Promise<Boolean> promise = Promise.promise();
+        client.get("/api/check/key/" + gameKey)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout)
+                .as(BodyCodec.jsonObject())
+                .send(decode(promise, body -> body.getBoolean("bought")));
+        return promise.future();
+    }
+}
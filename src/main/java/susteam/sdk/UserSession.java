@@ -0,0 +1,125 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cache of the user resolved from the token by /api/token
+ *
+ * The user is fetched once and shared by all calls until the ttl expires.
+ * After most of the ttl has passed, the next call refreshes it in the background
+ * while still getting the cached user. The user is dropped as soon as the server
+ * reports the token as invalid.
+ */
+class UserSession {
+
+    static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    static final String TOKEN_INVALID = "token invalid";
+
+    private final WebClient client;
+    private final String token;
+    private final long ttl;
+    private final long timeout;
+    private final long refreshAfter;
+
+    private Future<User> user;
+    private long fetchedAt;
+    private boolean refreshing;
+
+    /**
+     * @param client The client to send requests with
+     *
+     * @param token User token
+     *
+     * @param ttl Milliseconds a fetched user is reused
+     *
+     * @param timeout Milliseconds to wait for the response, 0 to wait forever
+     */
+    UserSession(WebClient client, String token, long ttl, long timeout) {
+        this.client = client;
+        this.token = token;
+        this.timeout = timeout;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.refreshAfter = this.ttl / 5 * 4;
+    }
+
+    /**
+     * Get User Future of the token, concurrent callers share the same request
+     *
+     * @return the future
+     */
+    synchronized Future<User> user() {
+        long now = System.nanoTime();
+        if (user == null || now - fetchedAt >= ttl) {
+            user = fetch();
+            fetchedAt = now;
+            refreshing = false;
+        } else if (!refreshing && now - fetchedAt >= refreshAfter && user.succeeded()) {
+            refresh(now);
+        }
+        return user;
+    }
+
+    /**
+     * Drop the cached user so the next call fetches it again
+     */
+    synchronized void invalidate() {
+        user = null;
+        refreshing = false;
+    }
+
+    private void refresh(long now) {
+        refreshing = true;
+        Future<User> stale = user;
+        fetch().onComplete(it -> {
+            synchronized (this) {
+                if (user != stale) {
+                    return;
+                }
+                refreshing = false;
+                if (it.succeeded()) {
+                    user = Future.succeededFuture(it.result());
+                    fetchedAt = now;
+                } else if (TOKEN_INVALID.equals(it.cause().getMessage())) {
+                    user = null;
+                }
+            }
+        });
+    }
+
+    private synchronized void drop(Future<User> failed) {
+        if (user == failed) {
+            user = null;
+        }
+    }
+
+    private Future<User> fetch() {
+        Promise<User> promise = Promise.promise();
+        client.get("/api/token").bearerTokenAuthentication(token).timeout(timeout).as(BodyCodec.jsonObject()).send(result -> {
+            if (result.failed()) {
+                promise.fail(result.cause());
+                return;
+            }
+            JsonObject body = result.result().body();
+            if (body == null) {
+                promise.fail("json format invalid");
+                return;
+            }
+            if (!Boolean.TRUE.equals(body.getBoolean("token"))) {
+                promise.fail(TOKEN_INVALID);
+                return;
+            }
+            promise.complete(UserKt.toUser(body.getJsonObject("userRole")));
+        });
+        Future<User> future = promise.future();
+        future.onFailure(it -> drop(future));
+        return future;
+    }
+}
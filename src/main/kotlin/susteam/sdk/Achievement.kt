@@ -19,6 +19,14 @@ fun Achievement.toJson(): JsonObject = jsonObjectOf(
         "achieveCount" to achieveCount
 )
 
+fun JsonObject.toAchievement(): Achievement = Achievement(
+        getInteger("gameId"),
+        getInteger("achievementId"),
+        getString("achievementName"),
+        getString("description"),
+        getInteger("achieveCount")
+)
+
 
 data class UserAchievementProcess(
         val username: String,
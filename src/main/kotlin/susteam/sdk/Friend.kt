@@ -17,6 +17,12 @@ fun Friend.toJson(): JsonObject = jsonObjectOf(
     if (lastSeen != null) it.put("lastSeen", lastSeen)
 }
 
+fun JsonObject.toFriend(): Friend = Friend(
+    getString("username"),
+    getBoolean("online"),
+    getInstant("lastSeen")
+)
+
 data class FriendApplication(
     val to: String,
     val status: String
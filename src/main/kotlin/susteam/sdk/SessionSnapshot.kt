@@ -0,0 +1,23 @@
+package susteam.sdk
+
+import io.vertx.core.json.JsonObject
+
+data class SessionSnapshot(
+    val user: User,
+    val game: Game,
+    val achievements: List<Achievement>,
+    val achievementProcesses: Map<String, Int>,
+    val maxScore: Int?,
+    val gameSaves: List<GameSave>,
+    val gameFriends: List<Friend>
+)
+
+fun JsonObject.toSessionSnapshot(): SessionSnapshot = SessionSnapshot(
+    getJsonObject("user").toUser(),
+    getJsonObject("game").toGame(),
+    getJsonArray("achievements").map { (it as JsonObject).toAchievement() },
+    getJsonObject("achievementProcesses").map { it.key to (it.value as Number).toInt() }.toMap(),
+    getInteger("maxScore"),
+    getJsonArray("gameSaves").map { (it as JsonObject).toGameSave() },
+    getJsonArray("friends").map { (it as JsonObject).toFriend() }
+)
@@ -0,0 +1,159 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Presence against a stand-in server pushing events over a WebSocket
+ */
+public class FriendPresenceTest {
+
+    private static final long TIMEOUT = 10;
+    private static final String TOKEN = "presence-token";
+
+    private final BlockingQueue<ServerWebSocket> sockets = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Friend> changes = new LinkedBlockingQueue<>();
+
+    private Vertx vertx;
+    private HttpClient client;
+    private FriendPresence presence;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        HttpServer server = await(Future.<HttpServer>future(listening -> vertx.createHttpServer()
+                .webSocketHandler(ws -> {
+                    if (!"/api/friend/presence".equals(ws.path())
+                            || !("Bearer " + TOKEN).equals(ws.headers().get("Authorization"))) {
+                        ws.reject();
+                        return;
+                    }
+                    sockets.add(ws);
+                })
+                .listen(0, "localhost", listening)));
+        SdkOptions options = new SdkOptions().setHost("localhost").setPort(server.actualPort());
+        client = vertx.createHttpClient();
+        presence = new FriendPresence(vertx, client, options, TOKEN, () -> Future.succeededFuture(new Friend[]{
+                new Friend("alice", false, Instant.parse("2020-01-01T00:00:00Z")),
+                new Friend("bob", true, null)
+        }));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        presence.close();
+        await(Future.<Void>future(closed -> vertx.close(closed)));
+    }
+
+    @Test
+    public void seedsThenAppliesPushedEvents() throws Exception {
+        await(presence.subscribe(changes::add));
+        ServerWebSocket ws = sockets.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(ws);
+        assertFalse(presence.friends().get("alice").getOnline());
+        assertTrue(presence.friends().get("bob").getOnline());
+        assertEquals(2, changes.size());
+        changes.clear();
+
+        ws.writeTextMessage(new JsonObject()
+                .put("type", "presence")
+                .put("username", "alice")
+                .put("online", true)
+                .put("lastSeen", Instant.parse("2020-01-02T00:00:00Z"))
+                .encode());
+        Friend alice = changes.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(new Friend("alice", true, Instant.parse("2020-01-02T00:00:00Z")), alice);
+        assertEquals(alice, presence.friends().get("alice"));
+
+        ws.writeTextMessage(new JsonObject()
+                .put("type", "snapshot")
+                .put("friends", new JsonArray().add(FriendKt.toJson(new Friend("bob", false, null))))
+                .encode());
+        assertEquals(new Friend("bob", false, null), changes.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(presence.friends().get("alice"));
+    }
+
+    @Test
+    public void reportsUndecodableEvents() throws Exception {
+        BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        presence.exceptionHandler(errors::add);
+        await(presence.subscribe(changes::add));
+        ServerWebSocket ws = sockets.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(ws);
+        changes.clear();
+
+        ws.writeTextMessage("not json");
+        assertNotNull(errors.poll(TIMEOUT, TimeUnit.SECONDS));
+        ws.writeTextMessage(new JsonObject().put("type", "presence").put("online", true).encode());
+        assertNotNull(errors.poll(TIMEOUT, TimeUnit.SECONDS));
+
+        // the connection stays usable after a bad event
+        ws.writeTextMessage(new JsonObject().put("type", "presence").put("username", "bob").put("online", false).encode());
+        assertEquals(new Friend("bob", false, null), changes.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void reconnectsAfterTheServerCloses() throws Exception {
+        await(presence.subscribe(changes::add));
+        ServerWebSocket ws = sockets.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(ws);
+        changes.clear();
+
+        ws.close();
+        ServerWebSocket reopened = sockets.poll(FriendPresence.RECONNECT_DELAY + TimeUnit.SECONDS.toMillis(TIMEOUT), TimeUnit.MILLISECONDS);
+        assertNotNull(reopened);
+
+        reopened.writeTextMessage(new JsonObject().put("type", "presence").put("username", "carol").put("online", true).encode());
+        Friend carol = changes.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(new Friend("carol", true, null), carol);
+        assertEquals(carol, presence.friends().get("carol"));
+    }
+
+    @Test
+    public void closesTheConnectionAfterTheLastListener() throws Exception {
+        Handler<Friend> listener = changes::add;
+        await(presence.subscribe(listener));
+        ServerWebSocket ws = sockets.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(ws);
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        ws.closeHandler(closed::complete);
+
+        presence.unsubscribe(listener);
+        closed.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(it -> {
+            if (it.succeeded()) {
+                result.complete(it.result());
+            } else {
+                result.completeExceptionally(it.cause());
+            }
+        });
+        return result.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+}
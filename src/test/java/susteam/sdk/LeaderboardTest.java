@@ -0,0 +1,105 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Cached top records, against fetches answered by hand
+ */
+public class LeaderboardTest {
+
+    private static final long TIMEOUT = 10;
+
+    private final BlockingQueue<Promise<Record[]>> fetches = new LinkedBlockingQueue<>();
+
+    private Vertx vertx;
+    private Leaderboard leaderboard;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        leaderboard = new Leaderboard(vertx, rankNum -> {
+            Promise<Record[]> fetched = Promise.promise();
+            fetches.add(fetched);
+            return fetched.future();
+        }, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        leaderboard.close();
+        await(Future.<Void>future(closed -> vertx.close(closed)));
+    }
+
+    @Test
+    public void servesTheCachedTopUntilInvalidated() throws Exception {
+        Future<Record[]> first = leaderboard.rank(2);
+        fetches.poll(TIMEOUT, TimeUnit.SECONDS).complete(records(10, 20, 30));
+        assertEquals(20, await(first)[1].getScore());
+
+        assertEquals(2, await(leaderboard.rank(2)).length);
+        assertNull(fetches.poll(200, TimeUnit.MILLISECONDS));
+
+        leaderboard.invalidate();
+        Future<Record[]> after = leaderboard.rank(2);
+        fetches.poll(TIMEOUT, TimeUnit.SECONDS).complete(records(40, 30));
+        assertEquals(40, await(after)[0].getScore());
+    }
+
+    @Test
+    public void dropsAFetchStartedBeforeTheInvalidation() throws Exception {
+        Future<Record[]> before = leaderboard.rank(1);
+        Promise<Record[]> old = fetches.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(old);
+
+        // a record is added while the old top is in flight
+        leaderboard.invalidate();
+        Future<Record[]> after = leaderboard.rank(1);
+        Promise<Record[]> fresh = fetches.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(fresh);
+
+        // the old answer is dropped and its caller joins the fresh fetch
+        old.complete(records(10));
+        assertFalse(before.isComplete());
+        fresh.complete(records(50));
+        assertEquals(50, await(after)[0].getScore());
+        assertEquals(50, await(before)[0].getScore());
+        assertEquals(50, await(leaderboard.rank(1))[0].getScore());
+        assertNull(fetches.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static Record[] records(int... scores) {
+        Record[] records = new Record[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            records[i] = new Record(i + 1, 1, "player" + i, scores[i]);
+        }
+        return records;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(it -> {
+            if (it.succeeded()) {
+                result.complete(it.result());
+            } else {
+                result.completeExceptionally(it.cause());
+            }
+        });
+        return result.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+}
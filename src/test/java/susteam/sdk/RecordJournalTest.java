@@ -0,0 +1,130 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.NoStackTraceThrowable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Scores sent from the journal, across closing and opening it again
+ */
+public class RecordJournalTest {
+
+    private static final long TIMEOUT = 10;
+
+    private final BlockingQueue<Integer> posted = new LinkedBlockingQueue<>();
+
+    private Vertx vertx;
+    private String gameKey;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        // a fresh game key, so no journal of an earlier run is found
+        gameKey = "record-journal-" + UUID.randomUUID();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File journals = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/records/" + gameKey);
+        if (journals.exists()) {
+            vertx.fileSystem().deleteRecursiveBlocking(journals.getPath(), true);
+        }
+        await(Future.<Void>future(closed -> vertx.close(closed)));
+    }
+
+    @Test
+    public void sendsInOrderAndNotAgainAfterClose() throws Exception {
+        RecordJournal journal = open(score -> {
+            posted.add(score);
+            return Future.succeededFuture();
+        });
+        for (int score = 1; score <= 3; score++) {
+            await(journal.submit(score));
+        }
+        for (int score = 1; score <= 3; score++) {
+            assertEquals(Integer.valueOf(score), posted.poll(TIMEOUT, TimeUnit.SECONDS));
+        }
+        await(journal.close());
+
+        RecordJournal reopened = open(score -> {
+            posted.add(score);
+            return Future.succeededFuture();
+        });
+        assertNull(posted.poll(500, TimeUnit.MILLISECONDS));
+        await(reopened.close());
+    }
+
+    @Test
+    public void closeWaitsForTheScoreInFlight() throws Exception {
+        Promise<Void> answer = Promise.promise();
+        RecordJournal journal = open(score -> {
+            posted.add(score);
+            return score == 1 ? answer.future() : Future.succeededFuture();
+        });
+        await(journal.submit(1));
+        await(journal.submit(2));
+        assertEquals(Integer.valueOf(1), posted.poll(TIMEOUT, TimeUnit.SECONDS));
+
+        Future<Void> closed = journal.close();
+        Thread.sleep(200);
+        assertFalse(closed.isComplete());
+        answer.complete();
+        await(closed);
+        assertNull(posted.poll(200, TimeUnit.MILLISECONDS));
+
+        // the answered score is acknowledged, only the one never sent is sent again
+        RecordJournal reopened = open(score -> {
+            posted.add(score);
+            return Future.succeededFuture();
+        });
+        assertEquals(Integer.valueOf(2), posted.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(posted.poll(500, TimeUnit.MILLISECONDS));
+        await(reopened.close());
+    }
+
+    @Test
+    public void dropsRejectedScores() throws Exception {
+        RecordJournal journal = open(score -> {
+            posted.add(score);
+            return score == 1 ? Future.failedFuture(new NoStackTraceThrowable("score invalid")) : Future.succeededFuture();
+        });
+        await(journal.submit(1));
+        await(journal.submit(2));
+        assertEquals(Integer.valueOf(1), posted.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), posted.poll(TIMEOUT, TimeUnit.SECONDS));
+        await(journal.close());
+    }
+
+    private RecordJournal open(IntFunction<Future<Void>> send) {
+        return new RecordJournal(vertx, gameKey, "journal-token", send);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(it -> {
+            if (it.succeeded()) {
+                result.complete(it.result());
+            } else {
+                result.completeExceptionally(it.cause());
+            }
+        });
+        return result.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,226 @@
+package susteam.sdk;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Chunking of saves, and delta upload against a stand-in server reassembling them
+ */
+public class SaveSyncTest {
+
+    private static final long TIMEOUT = 10;
+    private static final String TOKEN = "save-token";
+    private static final String USERNAME = "player";
+    private static final int SIZE = 1024 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, Buffer> chunks = new ConcurrentHashMap<>();
+    private final Map<String, Buffer> saves = new ConcurrentHashMap<>();
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final AtomicInteger fullSaves = new AtomicInteger();
+
+    private Vertx vertx;
+    private String gameKey;
+    private SaveSync sync;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        HttpServer server = await(Future.<HttpServer>future(listening -> vertx.createHttpServer()
+                .requestHandler(request -> request.bodyHandler(body -> serve(request, body)))
+                .listen(0, "localhost", listening)));
+        WebClient client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultHost("localhost")
+                .setDefaultPort(server.actualPort()));
+        // a fresh game key, so no manifest of an earlier run is found
+        gameKey = "save-sync-" + UUID.randomUUID();
+        sync = new SaveSync(vertx, client, TOKEN, gameKey, SdkOptions.DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File manifests = new File(System.getProperty("java.io.tmpdir"), "susteam/sdk/manifest/" + gameKey);
+        if (manifests.exists()) {
+            vertx.fileSystem().deleteRecursiveBlocking(manifests.getPath(), true);
+        }
+        await(Future.<Void>future(closed -> vertx.close(closed)));
+    }
+
+    @Test
+    public void chunksCoverTheFileAndReassembleIt() throws Exception {
+        byte[] data = random(SIZE, 1);
+        File file = write("world.sav", data);
+
+        JsonObject manifest = SaveSync.chunk(file);
+        assertEquals(SIZE, (long) manifest.getLong("size"));
+        byte[] reassembled = new byte[SIZE];
+        int offset = 0;
+        JsonArray list = manifest.getJsonArray("chunks");
+        for (int i = 0; i < list.size(); i++) {
+            JsonObject chunk = list.getJsonObject(i);
+            int length = chunk.getInteger("length");
+            assertTrue(length <= 64 * 1024);
+            if (i < list.size() - 1) {
+                assertTrue(length >= 2 * 1024);
+            }
+            byte[] part = Arrays.copyOfRange(data, offset, offset + length);
+            assertEquals(SaveSync.hex(SaveSync.sha256().digest(part)), chunk.getString("hash"));
+            System.arraycopy(part, 0, reassembled, offset, length);
+            offset += length;
+        }
+        assertEquals(SIZE, offset);
+        assertArrayEquals(data, reassembled);
+        assertEquals(manifest, SaveSync.chunk(file));
+    }
+
+    @Test
+    public void editKeepsTheChunksAwayFromIt() throws Exception {
+        byte[] data = random(SIZE, 2);
+        JsonArray before = SaveSync.chunk(write("before.sav", data)).getJsonArray("chunks");
+        // insert bytes in the middle, shifting everything after them
+        byte[] edited = new byte[SIZE + 100];
+        System.arraycopy(data, 0, edited, 0, SIZE / 2);
+        System.arraycopy(random(100, 3), 0, edited, SIZE / 2, 100);
+        System.arraycopy(data, SIZE / 2, edited, SIZE / 2 + 100, SIZE / 2);
+        JsonArray after = SaveSync.chunk(write("after.sav", edited)).getJsonArray("chunks");
+
+        int changed = 0;
+        for (Object chunk : after) {
+            if (!before.contains(chunk)) {
+                changed++;
+            }
+        }
+        assertTrue("changed chunks: " + changed, changed <= 4);
+    }
+
+    @Test
+    public void syncUploadsOnlyTheChangedChunks() throws Exception {
+        byte[] data = random(SIZE, 4);
+        File file = write("world.sav", data);
+
+        await(sync.sync(USERNAME, file, this::fullSave));
+        int chunkCount = SaveSync.chunk(file).getJsonArray("chunks").size();
+        assertEquals(chunkCount, uploads.get());
+        assertArrayEquals(data, saves.get("world.sav").getBytes());
+
+        // unchanged, so nothing is sent
+        uploads.set(0);
+        await(sync.sync(USERNAME, file, this::fullSave));
+        assertEquals(0, uploads.get());
+
+        byte[] edited = data.clone();
+        System.arraycopy(random(100, 5), 0, edited, SIZE / 3, 100);
+        Files.write(file.toPath(), edited);
+        await(sync.sync(USERNAME, file, this::fullSave));
+        assertTrue("uploaded chunks: " + uploads.get(), uploads.get() >= 1 && uploads.get() <= 3);
+        assertArrayEquals(edited, saves.get("world.sav").getBytes());
+        assertEquals(0, fullSaves.get());
+    }
+
+    private Future<Void> fullSave() {
+        fullSaves.incrementAndGet();
+        return Future.succeededFuture();
+    }
+
+    /**
+     * Serve /api/save/{user}/{gameKey}/{saveName}/manifest, /chunk/{hash} and /commit
+     */
+    private void serve(HttpServerRequest request, Buffer body) {
+        String[] path = request.path().split("/");
+        if (path.length < 7 || !("Bearer " + TOKEN).equals(request.getHeader("Authorization"))) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+        String saveName = path[5];
+        JsonObject answer = new JsonObject().put("success", true);
+        switch (path[6]) {
+            case "manifest": {
+                JsonArray missing = new JsonArray();
+                for (Object it : body.toJsonObject().getJsonArray("chunks")) {
+                    String hash = ((JsonObject) it).getString("hash");
+                    if (!chunks.containsKey(hash) && !missing.contains(hash)) {
+                        missing.add(hash);
+                    }
+                }
+                answer.put("missing", missing);
+                break;
+            }
+            case "chunk": {
+                String hash = path[7];
+                if (!hash.equals(SaveSync.hex(SaveSync.sha256().digest(body.getBytes())))) {
+                    answer = new JsonObject().put("success", false).put("error", "chunk hash mismatch");
+                    break;
+                }
+                uploads.incrementAndGet();
+                chunks.put(hash, body);
+                break;
+            }
+            case "commit": {
+                Buffer save = Buffer.buffer();
+                for (Object it : body.toJsonObject().getJsonArray("chunks")) {
+                    save.appendBuffer(chunks.get(((JsonObject) it).getString("hash")));
+                }
+                saves.put(saveName, save);
+                break;
+            }
+            default:
+                request.response().setStatusCode(404).end();
+                return;
+        }
+        request.response().putHeader("Content-Type", "application/json").end(answer.toBuffer());
+    }
+
+    private File write(String name, byte[] data) throws Exception {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(it -> {
+            if (it.succeeded()) {
+                result.complete(it.result());
+            } else {
+                result.completeExceptionally(it.cause());
+            }
+        });
+        return result.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+}